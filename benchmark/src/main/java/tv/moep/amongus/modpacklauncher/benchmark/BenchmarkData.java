@@ -0,0 +1,263 @@
+package tv.moep.amongus.modpacklauncher.benchmark;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.io.FileCopier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the synthetic files the benchmarks run on. A fixed seed is used so that every run
+ * works on the same data.
+ */
+public class BenchmarkData {
+    private static final long SEED = 0x416d6f6e67L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BenchmarkData() {}
+
+    /**
+     * Create a tree that resembles an Among Us installation: a few big asset files which make up
+     * half of the size and many small files (assemblies, configs, sharedassets) in nested folders.
+     * @param root      The folder to create the tree in
+     * @param files     The total amount of files
+     * @param totalSize The total size of all files in bytes
+     * @throws IOException If a file could not be written
+     */
+    public static void createGameTree(Path root, int files, long totalSize) throws IOException {
+        Random random = new Random(SEED);
+        Path data = root.resolve("Among Us_Data");
+        Files.createDirectories(data);
+        long bigSize = totalSize / 2;
+        long[] bigFiles = {bigSize / 2, bigSize / 4, bigSize / 8, bigSize / 8};
+        for (int i = 0; i < bigFiles.length; i++) {
+            writeRandom(data.resolve(i == 0 ? "resources.assets.resS" : "sharedassets" + i + ".assets.resS"), bigFiles[i], random);
+        }
+        int smallFiles = Math.max(0, files - bigFiles.length);
+        long smallSize = smallFiles > 0 ? (totalSize - bigSize) / smallFiles : 0;
+        String[] folders = {"Managed", "Plugins/x86", "StreamingAssets/aa", "StreamingAssets/aa/StandaloneWindows", "Resources", ""};
+        for (int i = 0; i < smallFiles; i++) {
+            Path folder = data.resolve(folders[i % folders.length]);
+            Files.createDirectories(folder);
+            // Vary the size between half and one and a half of the average
+            long size = smallSize / 2 + (smallSize > 0 ? (long) (random.nextDouble() * smallSize) : 0);
+            writeRandom(folder.resolve("file" + i + ".dat"), size, random);
+        }
+    }
+
+    /**
+     * Create a zip archive that resembles a BepInEx based mod pack: mostly well compressible
+     * assemblies and configs and a few already compressed bundles.
+     * @param zipFile   The file to write the archive to
+     * @param entries   The amount of file entries
+     * @param totalSize The total uncompressed size of all entries in bytes
+     * @throws IOException If the archive could not be written
+     */
+    public static void createModArchive(Path zipFile, int entries, long totalSize) throws IOException {
+        Random random = new Random(SEED);
+        String[] folders = {"BepInEx/core/", "BepInEx/plugins/", "BepInEx/config/", "BepInEx/unhollowed/", "mono/Managed/"};
+        long entrySize = totalSize / Math.max(1, entries);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+            for (String folder : folders) {
+                out.putNextEntry(new ZipEntry(folder));
+                out.closeEntry();
+            }
+            for (int i = 0; i < entries; i++) {
+                out.putNextEntry(new ZipEntry(folders[i % folders.length] + "entry" + i + ".dll"));
+                boolean compressible = i % 8 != 0;
+                long remaining = entrySize / 2 + (long) (random.nextDouble() * entrySize);
+                while (remaining > 0) {
+                    int length = (int) Math.min(buffer.length, remaining);
+                    if (compressible) {
+                        fillCompressible(buffer, length, random);
+                    } else {
+                        random.nextBytes(buffer);
+                    }
+                    out.write(buffer, 0, length);
+                    remaining -= length;
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Create a file that resembles a globalgamemanagers file with the version line close to the
+     * end of the file where the real one is usually found.
+     * @param file    The file to write
+     * @param size    The size of the file in bytes
+     * @param version The version to write into the version line
+     * @throws IOException If the file could not be written
+     */
+    public static void createGameManagers(Path file, long size, String version) throws IOException {
+        Random random = new Random(SEED);
+        byte[] line = ("\n\u0000\u0000Among Us\u0000\u0000Innersloth\u0000\u0000" + version + "\u0000\u0000\n").getBytes(StandardCharsets.ISO_8859_1);
+        long before = Math.max(0, size - line.length - 4096);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writeRandom(out, before, random, true);
+            out.write(line);
+            writeRandom(out, Math.max(0, size - before - line.length), random, true);
+        }
+    }
+
+    /**
+     * Create a response of the GitHub releases API with all the fields that the launcher skips
+     * @param releases The amount of releases
+     * @param assets   The amount of assets per release
+     * @return The UTF-8 encoded response
+     */
+    public static byte[] createGitHubReleases(int releases, int assets) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < releases; i++) {
+            String tag = "v" + (releases - i) + ".0." + (i % 10);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"url\":\"https://api.github.com/repos/user/repository/releases/").append(i).append("\",")
+                    .append("\"id\":").append(1000000 + i).append(',')
+                    .append("\"author\":").append(createUser()).append(',')
+                    .append("\"tag_name\":\"").append(tag).append("\",")
+                    .append("\"name\":\"Release ").append(tag).append("\",")
+                    .append("\"draft\":false,\"prerelease\":false,")
+                    .append("\"published_at\":\"2021-03-").append(String.format("%02d", i % 28 + 1)).append("T12:00:00Z\",")
+                    .append("\"assets\":[");
+            for (int j = 0; j < assets; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                String name = "ModPack-" + tag + "-2021.3." + (j + 1) + ".zip";
+                json.append("{\"id\":").append(2000000 + i * assets + j).append(',')
+                        .append("\"name\":\"").append(name).append("\",")
+                        .append("\"uploader\":").append(createUser()).append(',')
+                        .append("\"content_type\":\"application/x-zip-compressed\",")
+                        .append("\"state\":\"uploaded\",\"size\":").append(20000000 + j).append(',')
+                        .append("\"download_count\":").append(i * 37 + j).append(',')
+                        .append("\"browser_download_url\":\"https://github.com/user/repository/releases/download/").append(tag).append('/').append(name).append("\"}");
+            }
+            json.append("],\"body\":\"").append(createChangelog()).append("\",")
+                    .append("\"reactions\":{\"total_count\":12,\"+1\":10,\"heart\":2}}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create a response of the GitLab releases API with all the fields that the launcher skips
+     * @param releases The amount of releases
+     * @param links    The amount of asset links per release
+     * @return The UTF-8 encoded response
+     */
+    public static byte[] createGitLabReleases(int releases, int links) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < releases; i++) {
+            String tag = "v" + (releases - i) + ".0." + (i % 10);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"Release ").append(tag).append("\",")
+                    .append("\"tag_name\":\"").append(tag).append("\",")
+                    .append("\"description\":\"").append(createChangelog()).append("\",")
+                    .append("\"created_at\":\"2021-03-01T12:00:00Z\",")
+                    .append("\"released_at\":\"2021-03-").append(String.format("%02d", i % 28 + 1)).append("T12:00:00Z\",")
+                    .append("\"author\":").append(createUser()).append(',')
+                    .append("\"commit\":{\"id\":\"0123456789abcdef0123456789abcdef01234567\",\"message\":\"Release ").append(tag).append("\"},")
+                    .append("\"assets\":{\"count\":").append(links + 2).append(",\"sources\":[")
+                    .append("{\"format\":\"zip\",\"url\":\"https://gitlab.com/user/repository/-/archive/").append(tag).append("/repository-").append(tag).append(".zip\"},")
+                    .append("{\"format\":\"tar.gz\",\"url\":\"https://gitlab.com/user/repository/-/archive/").append(tag).append("/repository-").append(tag).append(".tar.gz\"}")
+                    .append("],\"links\":[");
+            for (int j = 0; j < links; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                String name = "ModPack-" + tag + "-2021.3." + (j + 1) + ".zip";
+                json.append("{\"id\":").append(3000000 + i * links + j).append(',')
+                        .append("\"name\":\"").append(name).append("\",")
+                        .append("\"url\":\"https://gitlab.com/user/repository/uploads/").append(i).append('/').append(name).append("\",")
+                        .append("\"external\":false,\"link_type\":\"package\"}");
+            }
+            json.append("]},\"evidences\":[{\"sha\":\"0123456789abcdef\",\"collected_at\":\"2021-03-01T12:00:00Z\"}]}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Delete a folder that was used by a benchmark
+     * @param folder The folder
+     */
+    public static void delete(Path folder) {
+        FileCopier.delete(folder, (path, e) -> {
+            throw new IllegalStateException("Unable to delete " + path, e);
+        });
+    }
+
+    private static String createUser() {
+        return "{\"login\":\"user\",\"id\":123456,\"avatar_url\":\"https://avatars.githubusercontent.com/u/123456?v=4\","
+                + "\"html_url\":\"https://github.com/user\",\"type\":\"User\",\"site_admin\":false}";
+    }
+
+    private static String createChangelog() {
+        StringBuilder changelog = new StringBuilder("## Changes\\r\\n");
+        for (int i = 0; i < 20; i++) {
+            changelog.append("- Fixed issue #").append(100 + i).append(" with a \\\"quoted\\\" \\u00e9 description\\r\\n");
+        }
+        return changelog.toString();
+    }
+
+    private static void writeRandom(Path file, long size, Random random) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writeRandom(out, size, random, false);
+        }
+    }
+
+    private static void writeRandom(OutputStream out, long size, Random random, boolean binary) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            int length = (int) Math.min(buffer.length, remaining);
+            random.nextBytes(buffer);
+            if (binary) {
+                // Serialized asset data contains plenty of line breaks, the scanner has to handle them
+                for (int i = 0; i < length; i += 97) {
+                    buffer[i] = '\n';
+                }
+            }
+            out.write(buffer, 0, length);
+            remaining -= length;
+        }
+    }
+
+    private static void fillCompressible(byte[] buffer, int length, Random random) {
+        // Short repeated runs roughly compress like .NET assemblies do (about 2:1 to 3:1)
+        int i = 0;
+        while (i < length) {
+            byte value = (byte) random.nextInt(64);
+            int run = 1 + random.nextInt(8);
+            for (int j = 0; j < run && i < length; j++, i++) {
+                buffer[i] = value;
+            }
+        }
+    }
+}
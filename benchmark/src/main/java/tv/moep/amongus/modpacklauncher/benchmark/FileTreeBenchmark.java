@@ -0,0 +1,112 @@
+package tv.moep.amongus.modpacklauncher.benchmark;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.moep.amongus.modpacklauncher.io.FileCopier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying and deleting a game sized folder like the launcher does when creating, updating and
+ * removing mod packs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileTreeBenchmark {
+
+    @Param({"600"})
+    public int files;
+
+    @Param({"256"})
+    public int sizeMiB;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Path folder;
+    private Path source;
+    private FileCopier copier;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        folder = Files.createTempDirectory("modpacklauncher-benchmark");
+        source = folder.resolve("Original");
+        BenchmarkData.createGameTree(source, files, sizeMiB * 1024L * 1024L);
+        copier = new FileCopier(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() {
+        BenchmarkData.delete(folder);
+    }
+
+    @State(Scope.Thread)
+    public static class CopyTarget {
+        private Path target;
+
+        @Setup(Level.Invocation)
+        public void clear(FileTreeBenchmark tree) {
+            target = tree.folder.resolve("Copy");
+            BenchmarkData.delete(target);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        private Path target;
+
+        @Setup(Level.Invocation)
+        public void fill(FileTreeBenchmark tree) throws IOException {
+            target = tree.folder.resolve("Delete");
+            BenchmarkData.delete(target);
+            tree.copier.copy(tree.source, target);
+        }
+    }
+
+    @Benchmark
+    public FileCopier.Result copy(CopyTarget copy) throws IOException {
+        return copier.copy(source, copy.target);
+    }
+
+    @Benchmark
+    public Path delete(DeleteTarget delete) {
+        BenchmarkData.delete(delete.target);
+        return delete.target;
+    }
+}
@@ -0,0 +1,87 @@
+package tv.moep.amongus.modpacklauncher.benchmark;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.moep.amongus.modpacklauncher.GameVersionScanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the game version from a globalgamemanagers file, once without and once with the cache
+ * that is used when the file didn't change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GameVersionBenchmark {
+    private static final String VERSION = "2021.3.5";
+
+    /** The globalgamemanagers of current versions is about 1.5 MiB */
+    @Param({"1536", "8192"})
+    public int sizeKiB;
+
+    private Path folder;
+    private Path gameFile;
+    private GameVersionScanner cachedScanner;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        folder = Files.createTempDirectory("modpacklauncher-benchmark");
+        gameFile = folder.resolve("globalgamemanagers");
+        BenchmarkData.createGameManagers(gameFile, sizeKiB * 1024L, VERSION);
+        cachedScanner = new GameVersionScanner();
+        if (!VERSION.equals(cachedScanner.getVersion(gameFile))) {
+            throw new IllegalStateException("Version of the generated file was not detected!");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        BenchmarkData.delete(folder);
+    }
+
+    @Benchmark
+    public String scan() throws IOException {
+        return new GameVersionScanner().getVersion(gameFile);
+    }
+
+    @Benchmark
+    public String cached() throws IOException {
+        return cachedScanner.getVersion(gameFile);
+    }
+}
@@ -0,0 +1,98 @@
+package tv.moep.amongus.modpacklauncher.benchmark;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+import tv.moep.amongus.modpacklauncher.Version;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing and sanitizing versions which happens for every mod pack whenever the list is updated
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionBenchmark {
+
+    @Param({"v2.1.3", "2.1.3-beta.2+build.5", "TheOtherRoles-v2.1.3-2021.3.5"})
+    public String version;
+
+    @Param({"v2.1.4"})
+    public String toCompare;
+
+    /** The amount of tags to sort */
+    @Param({"500"})
+    public int count;
+
+    private Version parsedVersion;
+    private Version parsedToCompare;
+    private List<String> tags;
+
+    @Setup
+    public void parse() {
+        parsedVersion = Version.of(version);
+        parsedToCompare = Version.of(toCompare);
+        tags = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tags.add("v" + (i / 100) + "." + (i / 10 % 10) + "." + (i % 10) + (i % 7 == 0 ? "-beta." + i % 3 : ""));
+        }
+        Collections.shuffle(tags, new Random(count));
+    }
+
+    @Benchmark
+    public boolean isVersionNewer() {
+        return ModPackLauncher.isVersionNewer(version, toCompare);
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return ModPackLauncher.sanitize(version);
+    }
+
+    @Benchmark
+    public int compare() {
+        return parsedVersion.compareTo(parsedToCompare);
+    }
+
+    @Benchmark
+    public List<String> sortTags() {
+        List<String> sorted = new ArrayList<>(tags);
+        Version.sort(sorted, tag -> tag);
+        return sorted;
+    }
+}
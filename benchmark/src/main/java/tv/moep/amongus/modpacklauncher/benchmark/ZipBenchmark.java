@@ -0,0 +1,97 @@
+package tv.moep.amongus.modpacklauncher.benchmark;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.moep.amongus.modpacklauncher.io.ZipExtractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting a mod pack archive, both from a downloaded file and while streaming the download.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZipBenchmark {
+
+    @Param({"400"})
+    public int entries;
+
+    @Param({"64"})
+    public int sizeMiB;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Path folder;
+    private Path archive;
+    private Path target;
+    private ZipExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        folder = Files.createTempDirectory("modpacklauncher-benchmark");
+        archive = folder.resolve("modpack.zip");
+        BenchmarkData.createModArchive(archive, entries, sizeMiB * 1024L * 1024L);
+        target = folder.resolve("Extracted");
+        extractor = new ZipExtractor(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() {
+        BenchmarkData.delete(folder);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        BenchmarkData.delete(target);
+    }
+
+    @Benchmark
+    public ZipExtractor.Result extractFile() throws IOException {
+        return extractor.extract(archive.toFile(), target);
+    }
+
+    @Benchmark
+    public ZipExtractor.Result extractStream() throws IOException {
+        try (InputStream in = Files.newInputStream(archive)) {
+            return extractor.extract(in, target);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package tv.moep.amongus.modpacklauncher.remote;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tv.moep.amongus.modpacklauncher.benchmark.BenchmarkData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the release lists of the GitHub and GitLab APIs. This is in the package of the sources
+ * to access their release parsers directly instead of going through a HTTP request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReleaseParsingBenchmark {
+
+    /** GitHub returns 30 releases per page by default */
+    @Param({"30", "100"})
+    public int releases;
+
+    @Param({"3"})
+    public int assets;
+
+    private byte[] gitHubResponse;
+    private byte[] gitLabResponse;
+
+    @Setup(Level.Trial)
+    public void createResponses() {
+        gitHubResponse = BenchmarkData.createGitHubReleases(releases, assets);
+        gitLabResponse = BenchmarkData.createGitLabReleases(releases, assets);
+    }
+
+    @Benchmark
+    public ReleaseIndex.Release gitHubLatest() {
+        return new ReleaseIndex(gitHubResponse, GitHubSource::parseRelease, ReleaseParsingBenchmark::fail).get(0);
+    }
+
+    @Benchmark
+    public void gitHubAll(Blackhole blackhole) {
+        for (ReleaseIndex.Release release : new ReleaseIndex(gitHubResponse, GitHubSource::parseRelease, ReleaseParsingBenchmark::fail)) {
+            blackhole.consume(release);
+        }
+    }
+
+    @Benchmark
+    public ReleaseIndex.Release gitLabLatest() {
+        return new ReleaseIndex(gitLabResponse, GitLabSource::parseRelease, ReleaseParsingBenchmark::fail).get(0);
+    }
+
+    @Benchmark
+    public void gitLabAll(Blackhole blackhole) {
+        for (ReleaseIndex.Release release : new ReleaseIndex(gitLabResponse, GitLabSource::parseRelease, ReleaseParsingBenchmark::fail)) {
+            blackhole.consume(release);
+        }
+    }
+
+    private static void fail(Exception e) {
+        throw new IllegalStateException("Unable to parse the generated response", e);
+    }
+}
@@ -0,0 +1,227 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Detects the version of the game from its globalgamemanagers file. The file is searched on the
+ * byte level without decoding it as text and the result is cached until the file changes.
+ */
+public class GameVersionScanner {
+    private static final byte[] AMONG_US = "Among Us".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] PUBLISHER_MARKERS = {
+            "Innersloth".getBytes(StandardCharsets.US_ASCII),
+            "public.app-category.games".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final Consumer<ByteBuffer> UNMAPPER = findUnmapper();
+
+    private final Map<Path, CachedVersion> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Get the version of a game file. Only the first call for a specific size and last modification
+     * time of the file actually reads it.
+     * @param gameFile The globalgamemanagers file of the game
+     * @return The version in the format yyyy.m.d or <code>null</code> if none was found
+     * @throws IOException If the file could not be read
+     */
+    public String getVersion(Path gameFile) throws IOException {
+        Path key = gameFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        CachedVersion cached = cache.get(key);
+        if (cached != null && cached.size == attributes.size() && cached.lastModified == lastModified) {
+            return cached.version;
+        }
+        String version = scan(key, attributes.size());
+        cache.put(key, new CachedVersion(attributes.size(), lastModified, version));
+        return version;
+    }
+
+    private static String scan(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (UNMAPPER != null && size <= Integer.MAX_VALUE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                try {
+                    return scan(buffer);
+                } finally {
+                    // A mapping that lingers until garbage collection keeps the file locked on Windows
+                    // which would prevent the game folder from being updated or deleted
+                    UNMAPPER.accept(buffer);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {}
+            buffer.flip();
+            return scan(buffer);
+        }
+    }
+
+    /**
+     * Find the version in the first line that contains "Among Us" and one of the publisher markers.
+     * Lines are separated by \n or \r like in {@link java.io.BufferedReader#readLine()}.
+     * @param buffer The content of the file
+     * @return The last version in the matching line or <code>null</code> if none was found
+     */
+    static String scan(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int position = 0;
+        int found;
+        while ((found = indexOf(buffer, AMONG_US, position, limit)) >= 0) {
+            int lineStart = found;
+            while (lineStart > 0 && !isLineBreak(buffer.get(lineStart - 1))) {
+                lineStart--;
+            }
+            int lineEnd = found + AMONG_US.length;
+            while (lineEnd < limit && !isLineBreak(buffer.get(lineEnd))) {
+                lineEnd++;
+            }
+            for (byte[] marker : PUBLISHER_MARKERS) {
+                if (indexOf(buffer, marker, lineStart, lineEnd) >= 0) {
+                    String version = findLastVersion(buffer, lineStart, lineEnd);
+                    if (version != null) {
+                        return version;
+                    }
+                    break;
+                }
+            }
+            position = lineEnd;
+        }
+        return null;
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] pattern, int from, int to) {
+        byte first = pattern[0];
+        int max = to - pattern.length;
+        for (int i = from; i <= max; i++) {
+            if (buffer.get(i) == first) {
+                int j = 1;
+                while (j < pattern.length && buffer.get(i + j) == pattern[j]) {
+                    j++;
+                }
+                if (j == pattern.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the last match of \d{4}\.\d{1,2}\.\d{1,2} in a range, matching with the same greediness
+     * as the regex .*(\d{4}\.\d{1,2}\.\d{1,2}).* that was used to read the version before.
+     */
+    private static String findLastVersion(ByteBuffer buffer, int from, int to) {
+        for (int start = to - 8; start >= from; start--) {
+            int end = matchVersion(buffer, start, to);
+            if (end > 0) {
+                byte[] version = new byte[end - start];
+                for (int i = 0; i < version.length; i++) {
+                    version[i] = buffer.get(start + i);
+                }
+                return new String(version, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    private static int matchVersion(ByteBuffer buffer, int start, int to) {
+        int i = start;
+        for (int j = 0; j < 4; j++, i++) {
+            if (!isDigit(buffer, i, to)) {
+                return -1;
+            }
+        }
+        for (int part = 0; part < 2; part++) {
+            if (i >= to || buffer.get(i) != '.' || !isDigit(buffer, i + 1, to)) {
+                return -1;
+            }
+            i += 2;
+            if (isDigit(buffer, i, to) && (part == 1 || (i + 1 < to && buffer.get(i + 1) == '.'))) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isDigit(ByteBuffer buffer, int index, int to) {
+        if (index >= to) {
+            return false;
+        }
+        byte b = buffer.get(index);
+        return b >= '0' && b <= '9';
+    }
+
+    private static Consumer<ByteBuffer> findUnmapper() {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException ignored) {}
+            };
+        } catch (ReflectiveOperationException | RuntimeException ignored) {}
+        try {
+            // Java 8
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                try {
+                    clean.invoke(cleaner.invoke(buffer));
+                } catch (ReflectiveOperationException ignored) {}
+            };
+        } catch (ReflectiveOperationException | RuntimeException ignored) {}
+        // Reading the file is safer than keeping it locked until the buffer gets garbage collected
+        return null;
+    }
+
+    private static class CachedVersion {
+        private final long size;
+        private final long lastModified;
+        private final String version;
+
+        private CachedVersion(long size, long lastModified, String version) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.version = version;
+        }
+    }
+}
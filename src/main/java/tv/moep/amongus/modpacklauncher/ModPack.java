@@ -24,11 +24,23 @@ public class ModPack {
     private final Path path;
     private final String name;
     private final String version;
+    private final boolean preparing;
 
     public ModPack(Path path, String name, String version) {
+        this(path, name, version, false);
+    }
+
+    /**
+     * @param path The folder of the mod pack
+     * @param name The name
+     * @param version The version, can be <code>null</code>
+     * @param preparing Whether the folder is still being created in the background
+     */
+    public ModPack(Path path, String name, String version, boolean preparing) {
         this.path = path;
         this.name = name;
         this.version = version;
+        this.preparing = preparing;
     }
 
     public Path getPath() {
@@ -43,6 +55,10 @@ public class ModPack {
         return version;
     }
 
+    public boolean isPreparing() {
+        return preparing;
+    }
+
     public String getId() {
         return name + " - " + version;
     }
@@ -0,0 +1,91 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A change of the list of installed mod packs
+ */
+public class ModPackChange {
+    private final Type type;
+    private final ModPack previous;
+    private final ModPack modPack;
+
+    private ModPackChange(Type type, ModPack previous, ModPack modPack) {
+        this.type = type;
+        this.previous = previous;
+        this.modPack = modPack;
+    }
+
+    /**
+     * Get the changes between two lists of mod packs, mod packs are identified by their folder
+     * @param previous The previous list
+     * @param current The current list
+     * @return The changes, empty if both lists contain the same mod packs
+     */
+    public static List<ModPackChange> diff(List<ModPack> previous, List<ModPack> current) {
+        Map<Path, ModPack> remaining = new LinkedHashMap<>();
+        for (ModPack modPack : previous) {
+            remaining.put(modPack.getPath(), modPack);
+        }
+        List<ModPackChange> changes = new ArrayList<>();
+        for (ModPack modPack : current) {
+            ModPack old = remaining.remove(modPack.getPath());
+            if (old == null) {
+                changes.add(new ModPackChange(Type.ADDED, null, modPack));
+            } else if (!old.getName().equals(modPack.getName()) || !Objects.equals(old.getVersion(), modPack.getVersion()) || old.isPreparing() != modPack.isPreparing()) {
+                changes.add(new ModPackChange(Type.CHANGED, old, modPack));
+            }
+        }
+        for (ModPack old : remaining.values()) {
+            changes.add(new ModPackChange(Type.REMOVED, old, null));
+        }
+        return changes;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The mod pack before the change or <code>null</code> if it was added
+     */
+    public ModPack getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return The mod pack after the change or <code>null</code> if it was removed
+     */
+    public ModPack getModPack() {
+        return modPack;
+    }
+
+    public enum Type {
+        ADDED,
+        CHANGED,
+        REMOVED;
+    }
+}
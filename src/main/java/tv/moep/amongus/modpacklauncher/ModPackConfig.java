@@ -19,10 +19,12 @@ package tv.moep.amongus.modpacklauncher;
  */
 
 import tv.moep.amongus.modpacklauncher.remote.ModPackSource;
+import tv.moep.amongus.modpacklauncher.remote.UpdateAsset;
 
 import java.io.File;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ModPackConfig {
     private String name;
@@ -70,6 +72,23 @@ public class ModPackConfig {
         return source.getLatestVersion(this);
     }
 
+    /**
+     * Get the latest version of a plugin without blocking.
+     * @return A future completed with the latest version string or <code>null</code> if not found or an error occured
+     */
+    public CompletableFuture<String> getLatestVersionAsync() {
+        return source.getLatestVersionAsync(this);
+    }
+
+    /**
+     * Get the file of the latest version that should be downloaded
+     * @param gameVersion The version of the game to try to get the file for
+     * @return The asset to download or <code>null</code> if not found
+     */
+    public UpdateAsset getUpdateAsset(String gameVersion) {
+        return source.getUpdateAsset(this, gameVersion);
+    }
+
     /**
      * Download the latest version of a plugin into the target folder specified by the Updater.
      * @param gameVersion The version of the game to try to download the update for
@@ -79,6 +98,15 @@ public class ModPackConfig {
         return source.downloadUpdate(this, gameVersion);
     }
 
+    /**
+     * Download the latest version of a plugin without blocking.
+     * @param gameVersion The version of the game to try to download the update for
+     * @return A future completed with the newly downloaded file or <code>null</code> if not found
+     */
+    public CompletableFuture<File> downloadUpdateAsync(String gameVersion) {
+        return source.downloadUpdateAsync(this, gameVersion);
+    }
+
     /**
      * Get the URL where to download updates from manually
      * @return The update url
@@ -0,0 +1,461 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.io.FileCopier;
+import tv.moep.amongus.modpacklauncher.io.Hashes;
+import tv.moep.amongus.modpacklauncher.io.Manifest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent index of the mod packs installed in the Steam folder. The Steam folder is only listed
+ * again when its modification time changed and mod pack folders are only read again when their own
+ * modification time changed, so large Steam libraries don't need to be listed on every operation.
+ */
+public class ModPackIndex {
+    public static final String FOLDER_PREFIX = "Among Us - ";
+    /**
+     * The order of the mod pack list, the original games come first and packs with the same name are
+     * ordered by their version
+     */
+    public static final Comparator<ModPack> ORDER = Comparator.<ModPack, Boolean>comparing(m -> !m.getName().equals("Original"))
+            .thenComparing(ModPack::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Version.comparing(ModPack::getVersion))
+            .thenComparing(ModPack::getId, String.CASE_INSENSITIVE_ORDER);
+
+    private final ModPackLauncher launcher;
+    private final Path file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private Path steamFolder = null;
+    private long steamFolderModified = -1;
+
+    public ModPackIndex(ModPackLauncher launcher, Path file) {
+        this.launcher = launcher;
+        this.file = file;
+    }
+
+    /**
+     * Load the index and validate it against a Steam folder. Mod packs whose folder changed are
+     * read again, new folders are added and removed ones dropped. The folders are scanned without
+     * holding the lock of the index so that it stays usable in the meantime.
+     * @param steamFolder The Steam folder containing the mod packs
+     */
+    public void load(Path steamFolder) {
+        List<Path> toRead = new ArrayList<>();
+        boolean changed = false;
+        synchronized (this) {
+            entries.clear();
+            this.steamFolder = steamFolder;
+            steamFolderModified = -1;
+            if (Files.exists(file)) {
+                Properties index = new Properties();
+                try (InputStream in = Files.newInputStream(file)) {
+                    index.load(in);
+                    if (steamFolder.toAbsolutePath().toString().equals(index.getProperty("steam-folder"))) {
+                        steamFolderModified = Long.parseLong(index.getProperty("steam-folder.modified", "-1"));
+                        for (String key : index.stringPropertyNames()) {
+                            if (key.endsWith(".name")) {
+                                String folder = key.substring(0, key.length() - ".name".length());
+                                try {
+                                    entries.put(folder, new Entry(folder, index));
+                                } catch (NumberFormatException e) {
+                                    launcher.log(Level.WARNING, "Invalid mod pack index entry " + folder);
+                                }
+                            }
+                        }
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    launcher.log(Level.SEVERE, "Unable to load mod pack index " + file, e);
+                }
+            }
+
+            long modified = getModified(steamFolder);
+            if (modified != steamFolderModified) {
+                // A folder was added or removed
+                try (Stream<Path> list = Files.list(steamFolder)) {
+                    List<Path> folders = list.filter(p -> p.getFileName().toString().startsWith(FOLDER_PREFIX) && Files.isDirectory(p)).collect(Collectors.toList());
+                    entries.keySet().retainAll(folders.stream().map(p -> p.getFileName().toString()).collect(Collectors.toSet()));
+                    for (Path folder : folders) {
+                        if (!entries.containsKey(folder.getFileName().toString())) {
+                            toRead.add(folder);
+                        }
+                    }
+                } catch (IOException e) {
+                    launcher.log(Level.SEVERE, "Unable to list " + steamFolder, e);
+                }
+                steamFolderModified = modified;
+                changed = true;
+            }
+            for (Entry entry : new ArrayList<>(entries.values())) {
+                Path folder = steamFolder.resolve(entry.folder);
+                long folderModified = getModified(folder);
+                if (folderModified < 0) {
+                    entries.remove(entry.folder);
+                    changed = true;
+                } else if (folderModified != entry.modified) {
+                    toRead.add(folder);
+                }
+            }
+        }
+        List<Entry> read = read(toRead);
+        synchronized (this) {
+            if (!steamFolder.equals(this.steamFolder)) {
+                // Loaded again for a different folder in the meantime
+                return;
+            }
+            for (Entry entry : read) {
+                put(entry);
+            }
+            if (changed || !read.isEmpty()) {
+                save();
+            }
+        }
+    }
+
+    /**
+     * Refresh the entries of some mod pack folders. Folders that don't exist anymore are removed,
+     * new ones are added and existing ones are only read again if they were modified.
+     * @param folders The mod pack folders
+     * @return Whether or not any entry changed
+     */
+    public boolean refresh(Collection<Path> folders) {
+        List<Path> toRead = new ArrayList<>();
+        boolean changed = false;
+        synchronized (this) {
+            for (Path folder : folders) {
+                String folderName = folder.getFileName().toString();
+                Entry entry = entries.get(folderName);
+                if (!Files.isDirectory(folder)) {
+                    changed |= entries.remove(folderName) != null;
+                } else if (entry == null || entry.modified != getModified(folder)) {
+                    toRead.add(folder);
+                }
+            }
+        }
+        List<Entry> read = read(toRead);
+        synchronized (this) {
+            for (Entry entry : read) {
+                put(entry);
+            }
+            steamFolderModified = getModified(steamFolder);
+            save();
+        }
+        return changed || !read.isEmpty();
+    }
+
+    /**
+     * Add or update the entry of a mod pack folder by scanning it, e.g. after it changed
+     * @param folder The mod pack folder
+     */
+    public void update(Path folder) {
+        Entry entry = read(folder);
+        synchronized (this) {
+            put(entry);
+            steamFolderModified = getModified(steamFolder);
+            save();
+        }
+    }
+
+    /**
+     * Add or update the entry of a mod pack folder from its manifest, e.g. after it was installed or
+     * verified. This also catches changes deep inside the folder which don't change its modification time.
+     * @param folder The mod pack folder
+     * @param manifest The manifest that matches the current files of the folder
+     */
+    public void update(Path folder, Manifest manifest) {
+        long modified = getModified(folder);
+        Map<String, long[]> files = new HashMap<>();
+        for (Manifest.Entry file : manifest.getEntries()) {
+            files.put(file.getPath(), new long[] {file.getSize(), file.getLastModified()});
+        }
+        Entry entry = createEntry(folder, modified, manifest.getSize(), getFingerprint(files));
+        synchronized (this) {
+            put(entry);
+            steamFolderModified = getModified(steamFolder);
+            save();
+        }
+    }
+
+    /**
+     * Remove the entry of a mod pack folder, e.g. after it was deleted
+     * @param folder The mod pack folder
+     */
+    public synchronized void remove(Path folder) {
+        if (entries.remove(folder.getFileName().toString()) != null) {
+            steamFolderModified = getModified(steamFolder);
+            save();
+        }
+    }
+
+    /**
+     * Record that a mod pack was launched
+     * @param folder The mod pack folder
+     */
+    public synchronized void recordLaunch(Path folder) {
+        Entry entry = entries.get(folder.getFileName().toString());
+        if (entry != null) {
+            entry.lastLaunch = System.currentTimeMillis();
+            save();
+        }
+    }
+
+    /**
+     * Get an entry of the index
+     * @param folder The mod pack folder
+     * @return The entry or <code>null</code> if the folder isn't indexed
+     */
+    public synchronized Entry get(Path folder) {
+        return entries.get(folder.getFileName().toString());
+    }
+
+    /**
+     * Get all indexed mod packs, the original games first
+     * @return The mod packs
+     */
+    public synchronized List<ModPack> getModPacks() {
+        return entries.values().stream()
+                .map(e -> new ModPack(steamFolder.resolve(e.folder), e.name, e.version))
+                .sorted(ORDER)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the folders of all indexed original games
+     * @return The folders
+     */
+    public synchronized List<Path> getOriginalGames() {
+        return entries.keySet().stream()
+                .filter(folder -> folder.startsWith(FOLDER_PREFIX + "Original - "))
+                .map(steamFolder::resolve)
+                .collect(Collectors.toList());
+    }
+
+    private List<Entry> read(List<Path> folders) {
+        List<Entry> read = new ArrayList<>();
+        for (Path folder : folders) {
+            read.add(read(folder));
+        }
+        return read;
+    }
+
+    /**
+     * Read a mod pack folder, this scans all of its files for the size and fingerprint
+     * @param folder The mod pack folder
+     * @return The entry of the folder, without its last launch
+     */
+    private Entry read(Path folder) {
+        // Taken before scanning so that a change while scanning gets noticed next time
+        long modified = getModified(folder);
+        long size = -1;
+        String fingerprint = null;
+        try {
+            FileCopier.Scan scan = launcher.getFileCopier().scan(folder);
+            size = 0;
+            Map<String, long[]> files = new HashMap<>();
+            for (FileCopier.Scan.Entry file : scan.getFiles()) {
+                String path = Manifest.toManifestPath(file.getPath());
+                // The manifest doesn't list itself, both ways of indexing need to see the same files
+                if (path.equals(Manifest.FILE_NAME) || path.equals(Manifest.FILE_NAME + ".tmp")) {
+                    continue;
+                }
+                size += file.getSize();
+                files.put(path, new long[] {file.getSize(), file.getLastModified().toMillis()});
+            }
+            fingerprint = getFingerprint(files);
+        } catch (IOException e) {
+            launcher.log(Level.WARNING, "Unable to scan " + folder + "! " + e.getMessage());
+        }
+        return createEntry(folder, modified, size, fingerprint);
+    }
+
+    private Entry createEntry(Path folder, long modified, long size, String fingerprint) {
+        String folderName = folder.getFileName().toString();
+        Properties properties = launcher.loadModPackProperties(folder);
+        String name = properties.getProperty("name", folderName.substring(FOLDER_PREFIX.length()));
+        String version = properties.getProperty("version");
+        String gameVersion = properties.getProperty("game-version", "Original".equals(name) ? version : null);
+        return new Entry(folderName, name, version, gameVersion, size, -1, fingerprint, modified);
+    }
+
+    /**
+     * Put an entry into the index, keeping the last launch of the entry it replaces
+     * @param entry The entry
+     */
+    private synchronized void put(Entry entry) {
+        Entry previous = entries.get(entry.folder);
+        if (previous != null) {
+            entry.lastLaunch = previous.lastLaunch;
+        }
+        entries.put(entry.folder, entry);
+    }
+
+    /**
+     * Create a fingerprint of the content of a folder from the paths, sizes and modification times of its files
+     * @param files The size and modification time of the files by their path separated by /
+     * @return The fingerprint as a hex string
+     */
+    private static String getFingerprint(Map<String, long[]> files) {
+        MessageDigest digest = Hashes.sha256();
+        files.keySet().stream().sorted().forEach(path -> {
+            long[] file = files.get(path);
+            digest.update((path + "\0" + file[0] + "\0" + file[1] + "\n").getBytes(StandardCharsets.UTF_8));
+        });
+        return Hashes.toHex(digest.digest());
+    }
+
+    private static long getModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void save() {
+        Properties index = new Properties();
+        index.setProperty("steam-folder", steamFolder.toAbsolutePath().toString());
+        index.setProperty("steam-folder.modified", String.valueOf(steamFolderModified));
+        for (Entry entry : entries.values()) {
+            entry.store(index);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                index.store(out, launcher.getName() + " " + launcher.getVersion() + " Mod Pack Index");
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Unable to save mod pack index", e);
+        }
+    }
+
+    public static class Entry {
+        private final String folder;
+        private final String name;
+        private final String version;
+        private final String gameVersion;
+        private final long size;
+        private long lastLaunch;
+        private final String fingerprint;
+        private final long modified;
+
+        private Entry(String folder, String name, String version, String gameVersion, long size, long lastLaunch, String fingerprint, long modified) {
+            this.folder = folder;
+            this.name = name;
+            this.version = version;
+            this.gameVersion = gameVersion;
+            this.size = size;
+            this.lastLaunch = lastLaunch;
+            this.fingerprint = fingerprint;
+            this.modified = modified;
+        }
+
+        private Entry(String folder, Properties index) {
+            this(folder,
+                    index.getProperty(folder + ".name"),
+                    index.getProperty(folder + ".version"),
+                    index.getProperty(folder + ".game-version"),
+                    Long.parseLong(index.getProperty(folder + ".size", "-1")),
+                    Long.parseLong(index.getProperty(folder + ".last-launch", "-1")),
+                    index.getProperty(folder + ".fingerprint"),
+                    Long.parseLong(index.getProperty(folder + ".modified", "-1")));
+        }
+
+        private void store(Properties index) {
+            index.setProperty(folder + ".name", name);
+            if (version != null) {
+                index.setProperty(folder + ".version", version);
+            }
+            if (gameVersion != null) {
+                index.setProperty(folder + ".game-version", gameVersion);
+            }
+            index.setProperty(folder + ".size", String.valueOf(size));
+            index.setProperty(folder + ".last-launch", String.valueOf(lastLaunch));
+            if (fingerprint != null) {
+                index.setProperty(folder + ".fingerprint", fingerprint);
+            }
+            index.setProperty(folder + ".modified", String.valueOf(modified));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Get the version of the original game the mod pack is based on
+         * @return The game version or <code>null</code> if unknown
+         */
+        public String getGameVersion() {
+            return gameVersion;
+        }
+
+        /**
+         * Get the size of all files of the mod pack
+         * @return The size in bytes or -1 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Get the time the mod pack was last launched
+         * @return The time in milliseconds since the epoch or -1 if it was never launched
+         */
+        public long getLastLaunch() {
+            return lastLaunch;
+        }
+
+        /**
+         * Get a fingerprint of the content which changes when files are added, removed or modified
+         * @return The fingerprint or <code>null</code> if unknown
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+}
@@ -23,79 +23,136 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.sun.jna.platform.win32.Advapi32Util;
 import com.sun.jna.platform.win32.Win32Exception;
 import com.sun.jna.platform.win32.WinReg;
+import tv.moep.amongus.modpacklauncher.io.BlobStore;
+import tv.moep.amongus.modpacklauncher.io.BoundedPipe;
+import tv.moep.amongus.modpacklauncher.io.CountingInputStream;
+import tv.moep.amongus.modpacklauncher.io.DirectorySync;
+import tv.moep.amongus.modpacklauncher.io.FileCopier;
+import tv.moep.amongus.modpacklauncher.io.FileStager;
+import tv.moep.amongus.modpacklauncher.io.Hashes;
+import tv.moep.amongus.modpacklauncher.io.Manifest;
+import tv.moep.amongus.modpacklauncher.io.PackVerifier;
+import tv.moep.amongus.modpacklauncher.io.TeeInputStream;
+import tv.moep.amongus.modpacklauncher.io.ZipExtractor;
+import tv.moep.amongus.modpacklauncher.metrics.Metrics;
+import tv.moep.amongus.modpacklauncher.remote.AssetCache;
 import tv.moep.amongus.modpacklauncher.remote.GitHubSource;
 import tv.moep.amongus.modpacklauncher.remote.GitLabSource;
+import tv.moep.amongus.modpacklauncher.remote.HttpCache;
 import tv.moep.amongus.modpacklauncher.remote.ModPackSource;
 import tv.moep.amongus.modpacklauncher.remote.NightlySource;
+import tv.moep.amongus.modpacklauncher.remote.RangedDownloader;
 import tv.moep.amongus.modpacklauncher.remote.SourceType;
+import tv.moep.amongus.modpacklauncher.remote.UpdateAsset;
+import tv.moep.amongus.modpacklauncher.task.TaskContext;
+import tv.moep.amongus.modpacklauncher.task.TaskScheduler;
 
 import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
 import java.awt.Desktop;
 import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.FileVisitResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 public class ModPackLauncher {
 
-    private final static Pattern VERSION_PATTERN = Pattern.compile(".*(\\d{4}\\.\\d{1,2}\\.\\d{1,2}).*");
-    private static final Pattern SEM_VER_PATTERN = Pattern.compile(".*?(\\d+\\.\\d+(\\.\\d+)?).*");
-
     private static Properties appProperties = new Properties();
+    /**
+     * Prefix of the launcher's own folders in the Steam folder, they are never listed as mod packs
+     */
+    private static final String STAGING_PREFIX = ".modpacklauncher-";
     private final String name;
     private final String version;
-    private final String latestVersion;
+    private final CompletableFuture<String> latestVersion;
     private final ModPackConfig updateConfig;
     private final File tempFolder;
     private final Properties properties = new Properties();
+    private final GameVersionScanner gameVersionScanner = new GameVersionScanner();
     private final Map<SourceType, ModPackSource> sources = new EnumMap<>(SourceType.class);
-    private final Map<String, ModPackConfig> modPackConfigs = new LinkedHashMap<>();
     private final ModPackConfig bepInExConfig;
     private final ModPackConfig reactorConfig;
     private final ModPackConfig customServerModConfig;
-    private BufferedImage icon;
-    private BufferedImage loadingImage;
-
-    private Cache<URL, String> queryCache = Caffeine.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
-
-    private Path steamFolder = null;
-    private String selected = null;
-    private List<ModPack> modPacks = new ArrayList<>();
-    private Path steamGame = null;
+    private final long startTime = System.nanoTime();
+    private final Map<String, String> startupPhases = new LinkedHashMap<>();
+    private final CompletableFuture<BufferedImage> icon;
+    private final CompletableFuture<Void> steamFolderReady;
+    private final Metrics metrics;
+    private BufferedImage loadingImage = null;
+
+    private Cache<URL, byte[]> queryCache = Caffeine.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
+
+    private volatile Path steamFolder = null;
+    private volatile String selected = null;
+    private final Object modPacksLock = new Object();
+    private final Map<Path, String> preparing = new ConcurrentHashMap<>();
+    private final Set<Path> deferredRefreshes = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<List<ModPackChange>>> modPackListeners = new CopyOnWriteArrayList<>();
+    private volatile List<ModPack> modPacks = Collections.emptyList();
+    private ModPackWatcher modPackWatcher = null;
+    private volatile Path steamGame = null;
+    private FileCopier fileCopier = null;
+    private ZipExtractor zipExtractor = null;
+    private AssetCache assetCache = null;
+    private RangedDownloader downloader = null;
+    private HttpCache httpCache = null;
+    private ExecutorService executor = null;
+    private TaskScheduler taskScheduler = null;
+    private ModPackIndex modPackIndex = null;
+    private ModPackRegistry modPackRegistry = null;
+    private BlobStore blobStore = null;
+    private PackVerifier packVerifier = null;
 
     public static void main(String[] args) {
         try {
@@ -109,6 +166,9 @@ public class ModPackLauncher {
     }
 
     private ModPackLauncher() {
+        name = appProperties.getProperty("application.name");
+        version = appProperties.getProperty("application.version");
+
         sources.put(SourceType.GITHUB, new GitHubSource(this));
         sources.put(SourceType.GITLAB, new GitLabSource(this));
         sources.put(SourceType.NIGHTLY, new NightlySource(this));
@@ -117,7 +177,6 @@ public class ModPackLauncher {
                 "user", "MoepTv",
                 "repository", "AmongUs-ModPackLauncher"
         ));
-        latestVersion = updateConfig.getLatestVersion();
 
         bepInExConfig = new ModPackConfig(getName(), getSource(SourceType.GITHUB), mapOf(
                 "user", "NuclearPowered",
@@ -133,65 +192,112 @@ public class ModPackLauncher {
                 "repository", "Unify"
         ));
 
-        // TODO: Read remote or from config
-        addModPackConfig(new ModPackConfig("TheOtherRoles", getSource(SourceType.GITHUB), mapOf(
-                "user", "Eisbison",
-                "repository", "TheOtherRoles"
-        )));
-        addModPackConfig(new ModPackConfig("ExtraRoles", getSource(SourceType.GITHUB), mapOf(
-                "user", "NotHunter101",
-                "repository", "ExtraRolesAmongUs"
-        )));
-        addModPackConfig(new ModPackConfig("TownOfUs", getSource(SourceType.GITHUB), mapOf(
-                "user", "slushiegoose",
-                "repository", "Town-Of-Us"
-        )));
-        addModPackConfig(new ModPackConfig("Sheriff Mod", getSource(SourceType.GITHUB), mapOf(
-                "user", "Woodi-dev",
-                "repository", "Among-Us-Sheriff-Mod"
-        )));
-
         if (new File("modpacklauncher.properties").exists()) {
             try (FileReader reader = new FileReader("modpacklauncher.properties")) {
                 properties.load(reader);
-                if (properties.containsKey("steam-folder")) {
-                    setSteamFolder(Paths.get(properties.getProperty("steam-folder")));
-                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
-        if (steamFolder == null) {
-            String detectedSteam = detectSteamFolder();
-            if (detectedSteam != null) {
-                setSteamFolder(Paths.get(detectedSteam));
-            }
-        }
-        name = appProperties.getProperty("application.name");
-        version = appProperties.getProperty("application.version");
-
         tempFolder = new File(System.getProperty("java.io.tmpdir"), name);
 
         if (!tempFolder.exists()) {
             tempFolder.mkdirs();
         }
-
-        try {
-            icon = ImageIO.read(ModPackLauncher.class.getClassLoader().getResourceAsStream("images/icon.png"));
-        } catch (IOException e) {
-            icon = null;
-        }
-
-        try {
-            loadingImage = ImageIO.read(ModPackLauncher.class.getClassLoader().getResourceAsStream("images/loading.gif"));
-        } catch (IOException e) {
-            loadingImage = null;
+        metrics = createMetrics();
+        recordStartupPhase("properties", startTime);
+
+        // Everything slow runs in the background while the window is shown, the window fills in the results as they finish
+        long updateCheckStart = System.nanoTime();
+        latestVersion = updateConfig.getLatestVersionAsync();
+        CompletableFuture<String> updateCheck = latestVersion.whenComplete((v, ex) -> recordStartupPhase("update check", updateCheckStart));
+        CompletableFuture<Void> registryRefresh = CompletableFuture.completedFuture(null);
+        if (properties.containsKey("registry-url")) {
+            registryRefresh = CompletableFuture.runAsync(() -> {
+                long phaseStart = System.nanoTime();
+                getModPackRegistry().refresh();
+                recordStartupPhase("registry", phaseStart);
+            }, getExecutor());
         }
+        icon = CompletableFuture.supplyAsync(() -> {
+            long phaseStart = System.nanoTime();
+            BufferedImage image = loadImage("images/icon.png");
+            recordStartupPhase("icon", phaseStart);
+            return image;
+        }, getExecutor());
+        steamFolderReady = CompletableFuture.runAsync(this::initSteamFolder, getExecutor());
+        CompletableFuture<Void> steamLoad = steamFolderReady.whenComplete((v, ex) -> {
+            if (ex != null) {
+                log(Level.SEVERE, "Error while loading the Steam folder", ex);
+            }
+        });
 
+        CompletableFuture<Void> windowShown = new CompletableFuture<>();
         if (System.console() == null && !GraphicsEnvironment.isHeadless()) {
-            new ModPackLauncherGui(this);
+            SwingUtilities.invokeLater(() -> {
+                long phaseStart = System.nanoTime();
+                try {
+                    new ModPackLauncherGui(this);
+                } finally {
+                    recordStartupPhase("window", phaseStart);
+                    windowShown.complete(null);
+                }
+            });
         } else {
             log(Level.SEVERE, "This software requires a GUI!\n");
+            windowShown.complete(null);
+        }
+        CompletableFuture.allOf(windowShown, updateCheck, registryRefresh, icon, steamLoad).whenComplete((v, ex) -> {
+            synchronized (startupPhases) {
+                log(Level.INFO, "Started in " + (System.nanoTime() - startTime) / 1000000 + "ms: " + startupPhases.entrySet().stream()
+                        .map(e -> e.getKey() + " " + e.getValue())
+                        .collect(Collectors.joining(", ")));
+            }
+        });
+    }
+
+    /**
+     * Use the Steam folder from the properties or detect it
+     */
+    private void initSteamFolder() {
+        long phaseStart = System.nanoTime();
+        Path folder = null;
+        if (properties.containsKey("steam-folder")) {
+            folder = Paths.get(properties.getProperty("steam-folder"));
+        } else {
+            String detectedSteam = detectSteamFolder();
+            if (detectedSteam != null) {
+                folder = Paths.get(detectedSteam);
+            }
+            recordStartupPhase("steam detection", phaseStart);
+        }
+        if (folder != null) {
+            long loadStart = System.nanoTime();
+            setSteamFolder(folder);
+            recordStartupPhase("steam folder", loadStart);
+        }
+    }
+
+    /**
+     * Record how long a phase of the startup took, the phases get logged once the startup is done
+     * @param phase The name of the phase
+     * @param phaseStart The {@link System#nanoTime()} when the phase started
+     */
+    private void recordStartupPhase(String phase, long phaseStart) {
+        long now = System.nanoTime();
+        String timing = (now - phaseStart) / 1000000 + "ms (done at " + (now - startTime) / 1000000 + "ms)";
+        synchronized (startupPhases) {
+            startupPhases.put(phase, timing);
+        }
+        log(Level.FINE, "Startup phase " + phase + " took " + timing);
+    }
+
+    private BufferedImage loadImage(String path) {
+        try (InputStream in = ModPackLauncher.class.getClassLoader().getResourceAsStream(path)) {
+            return in != null ? ImageIO.read(in) : null;
+        } catch (IOException e) {
+            log(Level.WARNING, "Unable to load image " + path + "! " + e.getMessage());
+            return null;
         }
     }
 
@@ -203,20 +309,27 @@ public class ModPackLauncher {
         return map;
     }
 
-    private ModPackSource getSource(SourceType sourceType) {
+    ModPackSource getSource(SourceType sourceType) {
         return sources.get(sourceType);
     }
 
     public Collection<ModPackConfig> getModPackConfigs() {
-        return modPackConfigs.values();
+        return getModPackRegistry().getAll();
     }
 
-    private void addModPackConfig(ModPackConfig modPackConfig) {
-        modPackConfigs.put(modPackConfig.getName(), modPackConfig);
+    public ModPackConfig getModPackConfig(String name) {
+        return getModPackRegistry().get(name);
     }
 
-    public ModPackConfig getModPackConfig(String name) {
-        return modPackConfigs.get(name);
+    /**
+     * Get the registry of the mod packs that can be installed, the remote registry is stored in the data folder
+     * @return The mod pack registry
+     */
+    public synchronized ModPackRegistry getModPackRegistry() {
+        if (modPackRegistry == null) {
+            modPackRegistry = new ModPackRegistry(this, getDataFolder().resolve("registry.index"));
+        }
+        return modPackRegistry;
     }
 
     public String getName() {
@@ -228,6 +341,14 @@ public class ModPackLauncher {
     }
 
     public String getLatestVersion() {
+        return latestVersion.join();
+    }
+
+    /**
+     * Get the latest version of the launcher without blocking
+     * @return A future completed with the latest version or <code>null</code> if it could not be checked
+     */
+    public CompletableFuture<String> getLatestVersionAsync() {
         return latestVersion;
     }
 
@@ -239,51 +360,8 @@ public class ModPackLauncher {
         return isVersionNewer(getVersion(), getLatestVersion());
     }
 
-    public boolean isVersionNewer(String version, String toCompare) {
-        if (version == null || toCompare == null) {
-            return false;
-        }
-        String sanVersion = sanitize(version);
-        String sanToCompare = sanitize(toCompare);
-
-        if (sanVersion.indexOf('.') > 0 && sanToCompare.indexOf('.') > 0) {
-            try {
-                int[] semVer = parseSemVer(sanVersion);
-                int[] toCompareSemVer = parseSemVer(sanToCompare);
-                return compareTo(toCompareSemVer, semVer) > 0;
-            } catch (NumberFormatException e) {
-                return false;
-            }
-        }
-        return false;
-    }
-
-    private int compareTo(int[] latestSemVer, int[] installedSemVer) {
-        for (int i = 0; i < installedSemVer.length && i < latestSemVer.length; i++) {
-            int latestVersionInt = latestSemVer[i];
-            int installedVersionInt = installedSemVer[i];
-            if (latestVersionInt > installedVersionInt) {
-                return 1;
-            } else if (latestVersionInt < installedVersionInt) {
-                return -1;
-            }
-        }
-
-        if (installedSemVer.length < latestSemVer.length) {
-            return 1;
-        } else if (installedSemVer.length > latestSemVer.length) {
-            return -1;
-        }
-        return 0;
-    }
-
-    private int[] parseSemVer(String version) throws NumberFormatException {
-        String[] split = version.split("\\.");
-        int[] semVer = new int[split.length];
-        for (int i = 0; i < split.length; i++) {
-            semVer[i] = Integer.parseInt(split[i]);
-        }
-        return semVer;
+    public static boolean isVersionNewer(String version, String toCompare) {
+        return Version.isNewer(version, toCompare);
     }
 
     public void log(Level level, String message, Throwable... exception) {
@@ -293,36 +371,132 @@ public class ModPackLauncher {
         }
     }
 
+    /**
+     * Query a url and decode the response as UTF-8
+     * @param url The url to query
+     * @param properties Request properties to send, alternating between key and value
+     * @return The response or <code>null</code> if the query failed
+     */
     public String query(URL url, String... properties) {
+        byte[] response = queryBytes(url, properties);
+        if (response == null) {
+            return null;
+        }
+        String s = new String(response, StandardCharsets.UTF_8);
+        // Plain text responses usually end with a line break which isn't part of the content
+        if (s.endsWith("\n")) {
+            s = s.substring(0, s.endsWith("\r\n") ? s.length() - 2 : s.length() - 1);
+        }
+        return s;
+    }
+
+    /**
+     * Query a url. Responses are requested gzip compressed, cached for a short time and stored in
+     * the persistent HTTP cache to revalidate them later. The same array instance is returned while
+     * the response is cached so it must not be modified.
+     * @param url The url to query
+     * @param properties Request properties to send, alternating between key and value
+     * @return The raw response body or <code>null</code> if the query failed
+     */
+    public byte[] queryBytes(URL url, String... properties) {
         return queryCache.get(url, u -> {
-            try {
+            HttpCache.Entry cached = getHttpCache().get(u, properties);
+            try (Metrics.Sample sample = getMetrics().start("query")) {
+                long start = System.nanoTime();
                 HttpURLConnection con = (HttpURLConnection) u.openConnection();
                 con.setRequestProperty("User-Agent", getUserAgent());
+                con.setRequestProperty("Accept-Encoding", "gzip");
                 for (int i = 0; i + 1 < properties.length; i += 2) {
                     con.addRequestProperty(properties[i], properties[i+1]);
                 }
-                StringBuilder msg = new StringBuilder();
+                if (cached != null) {
+                    if (cached.getETag() != null) {
+                        con.setRequestProperty("If-None-Match", cached.getETag());
+                    }
+                    if (cached.getLastModified() != null) {
+                        con.setRequestProperty("If-Modified-Since", cached.getLastModified());
+                    }
+                }
                 con.setUseCaches(false);
                 con.connect();
-                if (con.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
-                        String line;
-                        while ((line = in.readLine()) != null) {
-                            if (msg.length() != 0) {
-                                msg.append("\n");
-                            }
-                            msg.append(line);
+                if (con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                    sample.success();
+                    log(Level.FINE, "Query to " + url + " not modified (" + (System.nanoTime() - start) / 1000000 + "ms)");
+                    return cached.getBody();
+                } else if (con.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    byte[] body;
+                    long transferred;
+                    try (CountingInputStream counting = new CountingInputStream(con.getInputStream());
+                         InputStream in = "gzip".equalsIgnoreCase(con.getContentEncoding()) ? new GZIPInputStream(counting) : counting) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream(con.getContentLength() > 0 ? con.getContentLength() : 8192);
+                        byte[] buffer = new byte[8192];
+                        int r;
+                        while ((r = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, r);
                         }
+                        body = out.toByteArray();
+                        transferred = counting.getCount();
                     }
-                    return msg.toString();
+                    sample.success(transferred);
+                    log(Level.FINE, "Queried " + url + ": " + body.length + " bytes, " + transferred + " transferred (" + (System.nanoTime() - start) / 1000000 + "ms)");
+                    getHttpCache().put(u, properties, new HttpCache.Entry(body, con.getHeaderField("ETag"), con.getHeaderField("Last-Modified")));
+                    return body;
+                } else if (cached != null) {
+                    log(Level.WARNING, "Query to " + url + " returned " + con.getResponseCode() + ", using cached response");
+                    return cached.getBody();
                 }
             } catch (IOException e) {
                 log(Level.SEVERE, "Error while trying to query url " + url.toString() + ".", e);
+                if (cached != null) {
+                    return cached.getBody();
+                }
             }
             return null;
         });
     }
 
+    /**
+     * Get the executor for update checks and other background requests. The amount of threads can
+     * be set with the update-check-threads property.
+     * @return The executor
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = Math.max(1, getIntProperty("update-check-threads", 4));
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, getName() + " Worker " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Get the scheduler for installs, launches and other long running tasks. The amount of tasks
+     * that can run at the same time can be set with the task-threads property.
+     * @return The task scheduler
+     */
+    public synchronized TaskScheduler getTaskScheduler() {
+        if (taskScheduler == null) {
+            taskScheduler = new TaskScheduler(getIntProperty("task-threads", 2));
+        }
+        return taskScheduler;
+    }
+
+    /**
+     * Get the persistent cache for query responses
+     * @return The HTTP cache
+     */
+    public synchronized HttpCache getHttpCache() {
+        if (httpCache == null) {
+            httpCache = new HttpCache(this, getDataFolder().resolve("http-cache"));
+        }
+        return httpCache;
+    }
 
     public String getUserAgent() {
         return getName() + "/" + getVersion();
@@ -332,12 +506,43 @@ public class ModPackLauncher {
         return tempFolder;
     }
 
-    public static String sanitize(String version) {
-        Matcher matcher = SEM_VER_PATTERN.matcher(version);
-        if (matcher.matches()) {
-            return matcher.group(1);
+    /**
+     * Create a file to download an asset to that no other download uses. It is in its own folder so
+     * that it can keep the name of the asset.
+     * @param fileName The name of the file
+     * @return The path of the file, it doesn't exist yet
+     * @throws IOException If the folder could not be created
+     */
+    public Path createDownloadFile(String fileName) throws IOException {
+        Files.createDirectories(tempFolder.toPath());
+        return Files.createTempDirectory(tempFolder.toPath(), "download-").resolve(fileName);
+    }
+
+    /**
+     * Release a downloaded asset once it was used. Cached assets may get evicted again afterwards,
+     * all other downloads are deleted.
+     * @param downloaded The downloaded file
+     */
+    public void releaseDownload(File downloaded) {
+        if (getAssetCache().contains(downloaded)) {
+            getAssetCache().release(downloaded);
+            return;
+        }
+        Path parent = downloaded.toPath().getParent();
+        if (parent != null && parent.getFileName().toString().startsWith("download-") && tempFolder.toPath().equals(parent.getParent())) {
+            // Also removes the state of a download that didn't finish
+            deleteDirectory(parent);
+            return;
+        }
+        try {
+            Files.deleteIfExists(downloaded.toPath());
+        } catch (IOException e) {
+            log(Level.WARNING, "Unable to delete " + downloaded + "! " + e.getMessage());
         }
-        return version;
+    }
+
+    public static String sanitize(String version) {
+        return Version.of(version).getCore();
     }
 
     public Properties getProperties() {
@@ -349,24 +554,22 @@ public class ModPackLauncher {
     }
 
     public void setSteamFolder(Path path) {
+        synchronized (this) {
+            blobStore = null;
+        }
+        Path game = path.resolve("Among Us");
         steamFolder = path;
-        steamGame = steamFolder.resolve("Among Us");
-        if (Files.exists(steamGame) && Files.isDirectory(steamGame)) {
+        steamGame = game;
+        String snapshotVersion = null;
+        if (Files.exists(game) && Files.isDirectory(game)) {
             try {
                 selected = readSelected();
-                String version = parseGameVersion(steamGame);
+                String version = parseGameVersion(game);
                 if (version != null) {
-                    Path originalGame = steamFolder.resolve("Among Us - Original - " + version);
+                    Path originalGame = path.resolve("Among Us - Original - " + version);
                     selected = "Original - " + version;
-                    if (!Files.exists(originalGame)) {
-                        cleanDirectory(steamGame);
-                        copyDirectory(steamGame, originalGame);
-                        Properties properties = new Properties();
-                        try (OutputStream out = Files.newOutputStream(originalGame.resolve("modpack.properties"))) {
-                            properties.setProperty("name", "Original");
-                            properties.setProperty("version", version);
-                            properties.store(out, getName() + " " + getVersion() + " Config");
-                        }
+                    if (!Files.exists(originalGame) && preparing.putIfAbsent(originalGame, version) == null) {
+                        snapshotVersion = version;
                     }
                 }
             } catch (IOException e) {
@@ -374,7 +577,28 @@ public class ModPackLauncher {
             }
         }
 
+        getModPackIndex().load(steamFolder);
         updateModPacks();
+        watchSteamFolder();
+        if (snapshotVersion != null) {
+            String version = snapshotVersion;
+            Path originalGame = path.resolve("Among Us - Original - " + version);
+            Path staging = getSnapshotStagingFolder(path);
+            // Launching or installing based on the original game waits for this task as it uses the same folders
+            getTaskScheduler().submit("Snapshot Original " + version, Arrays.asList(game, originalGame), context -> {
+                try {
+                    snapshotOriginal(version, game, staging, originalGame, context);
+                } finally {
+                    preparing.remove(originalGame);
+                    updateModPacks();
+                }
+                return null;
+            }).onComplete((r, e) -> {
+                if (e != null && !(e instanceof CancellationException)) {
+                    log(Level.SEVERE, "Error while creating the snapshot of the original game " + version, e);
+                }
+            });
+        }
         setProperty("steam-folder", path.toAbsolutePath().toString());
     }
 
@@ -391,23 +615,85 @@ public class ModPackLauncher {
     }
 
     private void updateModPacks() {
-        modPacks.clear();
-        try {
-            Files.list(steamFolder).filter(p -> p.getFileName().toString().startsWith("Among Us - ") && Files.isDirectory(p)).forEach(p -> {
-                Properties properties = loadModPackProperties(p);
-                modPacks.add(new ModPack(p, properties.containsKey("name") ? properties.getProperty("name") : p.getFileName().toString().replace("Among Us - ", ""), properties.getProperty("version")));
-            });
-            modPacks.sort((o1, o2) -> {
-                if (o1.getName().equals("Original") && !o2.getName().equals("Orginal")) {
-                    return -1;
-                } else if (!o1.getName().equals("Original") && o2.getName().equals("Orginal")) {
-                    return 1;
+        synchronized (modPacksLock) {
+            List<ModPack> previous = modPacks;
+            // Replace the whole list so that other threads never see it half updated
+            List<ModPack> current = new ArrayList<>(getModPackIndex().getModPacks());
+            for (Map.Entry<Path, String> entry : preparing.entrySet()) {
+                if (current.stream().noneMatch(m -> m.getPath().equals(entry.getKey()))) {
+                    current.add(new ModPack(entry.getKey(), "Original", entry.getValue(), true));
                 }
-                return o1.getId().compareToIgnoreCase(o2.getId());
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+            }
+            current.sort(ModPackIndex.ORDER);
+            modPacks = Collections.unmodifiableList(current);
+            List<ModPackChange> changes = ModPackChange.diff(previous, modPacks);
+            if (!changes.isEmpty()) {
+                for (Consumer<List<ModPackChange>> listener : modPackListeners) {
+                    listener.accept(changes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Refresh mod pack folders that changed outside of the launcher. Folders used by a task are
+     * refreshed once no task uses them anymore.
+     * @param folders The folders that changed or <code>null</code> to check the whole Steam folder
+     */
+    public void refreshModPacks(Collection<Path> folders) {
+        if (folders == null) {
+            getModPackIndex().load(steamFolder);
+        } else {
+            List<Path> idle = new ArrayList<>();
+            for (Path folder : folders) {
+                if (!getTaskScheduler().isBusy(folder)) {
+                    idle.add(folder);
+                } else if (deferredRefreshes.add(folder)) {
+                    getTaskScheduler().whenIdle(folder).thenRunAsync(() -> {
+                        deferredRefreshes.remove(folder);
+                        refreshModPacks(Collections.singletonList(folder));
+                    }, getExecutor());
+                }
+            }
+            if (idle.isEmpty() || !getModPackIndex().refresh(idle)) {
+                return;
+            }
+        }
+        updateModPacks();
+    }
+
+    /**
+     * Register a listener for changes of the installed mod packs. Listeners are called on the
+     * thread that caused the change with all changes of one update in order.
+     * @param listener The listener
+     */
+    public void onModPacksChanged(Consumer<List<ModPackChange>> listener) {
+        modPackListeners.add(listener);
+    }
+
+    private void watchSteamFolder() {
+        synchronized (modPacksLock) {
+            try {
+                if (modPackWatcher != null) {
+                    modPackWatcher.close();
+                }
+                modPackWatcher = new ModPackWatcher(this, steamFolder, getIntProperty("watch-debounce", 500));
+            } catch (IOException e) {
+                modPackWatcher = null;
+                log(Level.WARNING, "Unable to watch " + steamFolder + " for mod pack changes! " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get the persistent index of the installed mod packs
+     * @return The mod pack index
+     */
+    public synchronized ModPackIndex getModPackIndex() {
+        if (modPackIndex == null) {
+            modPackIndex = new ModPackIndex(this, getDataFolder().resolve("modpacks.properties"));
         }
+        return modPackIndex;
     }
 
     private String detectSteamFolder() {
@@ -441,7 +727,7 @@ public class ModPackLauncher {
         return null;
     }
 
-    private Properties loadModPackProperties(Path path) {
+    Properties loadModPackProperties(Path path) {
         File propertiesFile = path.resolve("modpack.properties").toFile();
         Properties properties = new Properties();
         if (propertiesFile.exists()) {
@@ -454,6 +740,69 @@ public class ModPackLauncher {
         return properties;
     }
 
+    /**
+     * Get the cache for downloaded assets, its size is limited by the asset-cache-size property in MiB
+     * @return The asset cache
+     */
+    public synchronized AssetCache getAssetCache() {
+        if (assetCache == null) {
+            assetCache = new AssetCache(this, getDataFolder().resolve("assets"), getIntProperty("asset-cache-size", 1024) * 1024L * 1024L);
+        }
+        return assetCache;
+    }
+
+    /**
+     * Get the downloader for assets. The amount of parallel connections per download can be set
+     * with the download-segments property and the retries with download-retries.
+     * @return The downloader
+     */
+    public synchronized RangedDownloader getDownloader() {
+        if (downloader == null) {
+            downloader = new RangedDownloader(this, getIntProperty("download-segments", 4), 4 * 1024 * 1024, getIntProperty("download-retries", 3));
+        }
+        return downloader;
+    }
+
+    /**
+     * Create the metrics of the launcher's operations. They are registered as MBeans unless the
+     * metrics-jmx property is false and written to the metrics-file every metrics-interval seconds
+     * if that property is set.
+     * @return The metrics
+     */
+    private Metrics createMetrics() {
+        Metrics metrics = new Metrics(this, !"false".equalsIgnoreCase(properties.getProperty("metrics-jmx", "true")));
+        String file = properties.getProperty("metrics-file", "");
+        if (!file.isEmpty()) {
+            metrics.startDump(Paths.get(file), Math.max(1, getIntProperty("metrics-interval", 60)));
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the metrics of the launcher's operations like queries, downloads, extracting, copying and launching
+     * @return The metrics
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the folder where the launcher stores its persistent data, can be set with the data-folder property
+     * @return The data folder
+     */
+    public Path getDataFolder() {
+        return Paths.get(properties.getProperty("data-folder", "modpacklauncher-data"));
+    }
+
+    private int getIntProperty(String key, int def) {
+        try {
+            return Integer.parseInt(properties.getProperty(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            log(Level.WARNING, "Invalid " + key + " setting " + properties.getProperty(key) + "! " + e.getMessage());
+        }
+        return def;
+    }
+
     public void setProperty(String key, String value) {
         properties.setProperty(key, value);
         try (FileWriter writer = new FileWriter("modpacklauncher.properties")) {
@@ -463,14 +812,38 @@ public class ModPackLauncher {
         }
     }
 
+    /**
+     * Get the icon of the launcher, waits for it to be loaded
+     * @return The icon or <code>null</code> if it could not be loaded
+     */
     public BufferedImage getIcon() {
+        return icon.join();
+    }
+
+    /**
+     * Get the icon of the launcher without blocking
+     * @return A future completed with the icon or <code>null</code> if it could not be loaded
+     */
+    public CompletableFuture<BufferedImage> getIconAsync() {
         return icon;
     }
 
-    public BufferedImage getLoadingImage() {
+    public synchronized BufferedImage getLoadingImage() {
+        if (loadingImage == null) {
+            loadingImage = loadImage("images/loading.gif");
+        }
         return loadingImage;
     }
 
+    /**
+     * Get a future that completes once the Steam folder from the properties or the detected one
+     * is loaded at startup. It also completes if no Steam folder was found.
+     * @return The future
+     */
+    public CompletableFuture<Void> getSteamFolderReady() {
+        return steamFolderReady;
+    }
+
     public Path getSteamGame() {
         return steamGame;
     }
@@ -484,121 +857,897 @@ public class ModPackLauncher {
     }
 
     public void installModPack(Path baseDirectory, ModPackConfig config, String version) throws IOException {
-        String gameVersion = null;
-        if (baseDirectory.getFileName().toString().startsWith("Among Us - Original - ")) {
-            gameVersion = baseDirectory.getFileName().toString().substring("Among Us - Original - ".length());
+        installModPack(baseDirectory, config, version, TaskContext.NONE);
+    }
+
+    /**
+     * Install a mod pack based on an original game folder
+     * @param baseDirectory The game folder to base the mod pack on
+     * @param config The config of the mod pack
+     * @param version The version that gets installed
+     * @param context The context to report progress to and check for cancellation
+     * @throws IOException If the mod pack could not be downloaded or installed
+     */
+    public void installModPack(Path baseDirectory, ModPackConfig config, String version, TaskContext context) throws IOException {
+        String gameVersion = getBaseGameVersion(baseDirectory);
+        context.progress("Looking up " + config.getName() + " " + version);
+        UpdateAsset asset = config.getUpdateAsset(gameVersion);
+        if (asset == null) {
+            throw new IOException("Unable to find a download for " + config.getName() + " from source " + config.getSource().getName() + "!");
+        }
+        context.checkCancelled();
+        context.progress("Scanning " + baseDirectory.getFileName());
+        installModPack(scanBase(baseDirectory), config, version, asset, null, context);
+        updateModPacks();
+        collectGarbage();
+    }
+
+    /**
+     * Install a mod pack from an already scanned base folder
+     * @param base The scanned original game folder
+     * @param config The config of the mod pack
+     * @param version The version that gets installed
+     * @param asset The asset of the version
+     * @param prefetched The already downloaded asset or <code>null</code> if it should be downloaded while installing
+     * @param context The context to report progress to and check for cancellation
+     * @throws IOException If the mod pack could not be downloaded or installed
+     */
+    private void installModPack(BaseFolder base, ModPackConfig config, String version, UpdateAsset asset, File prefetched, TaskContext context) throws IOException {
+        String gameVersion = getBaseGameVersion(base.path);
+        Path modPackFolder = getModPackFolder(config.getName());
+        // Build the new version next to the old one so that a failed install leaves the old one untouched
+        Path staging = getInstallStagingFolder(config.getName());
+        if (Files.exists(staging)) {
+            context.progress("Removing incomplete install");
+            deleteDirectory(staging);
         }
-        Path downloaded = config.downloadUpdate(gameVersion).toPath();
-        Path modPackFolder = steamFolder.resolve("Among Us - " + config.getName());
-        if (Files.exists(modPackFolder)) {
-            deleteDirectory(modPackFolder);
+
+        boolean installed = false;
+        Manifest manifest;
+        try {
+            context.progress("Copying " + base.path.getFileName());
+            copyModPack(base, staging);
+            context.checkCancelled();
+
+            context.progress((prefetched != null ? "Extracting " : "Downloading and extracting ") + asset.getFileName());
+            File cached = prefetched != null ? prefetched : config.getSource().getCached(asset);
+            if (cached != null) {
+                try {
+                    unzip(cached, staging);
+                } finally {
+                    // A prefetched asset is released by whoever fetched it
+                    if (prefetched == null) {
+                        releaseDownload(cached);
+                    }
+                }
+            } else if (!extractWhileDownloading(config.getSource(), asset, staging)) {
+                File downloaded = config.getSource().download(config, asset);
+                if (downloaded == null) {
+                    throw new IOException("Unable to download " + asset.getFileName() + " for " + config.getName() + " from source " + config.getSource().getName() + "!");
+                }
+                try {
+                    unzip(downloaded, staging);
+                } finally {
+                    releaseDownload(downloaded);
+                }
+            }
+
+            File propertiesFile = staging.resolve("modpack.properties").toFile();
+            Properties properties = loadModPackProperties(staging);
+            try (FileWriter writer = new FileWriter(propertiesFile)) {
+                properties.setProperty("name", config.getName());
+                properties.setProperty("version", version);
+                if (gameVersion != null) {
+                    properties.setProperty("game-version", gameVersion);
+                }
+                // Remember the asset so that files can be restored from the asset cache when repairing
+                properties.setProperty("asset-source", config.getSource().getName());
+                properties.setProperty("asset-version", asset.getVersion());
+                properties.setProperty("asset-file", asset.getFileName());
+                properties.setProperty("asset-url", asset.getUrl().toString());
+                properties.store(writer, getName() + " " + getVersion() + " Config");
+            }
+
+            context.progress("Storing " + config.getName());
+            manifest = storeModPack(staging, Manifest.load(staging));
+            // Last point at which a cancellation can still be undone, the replacement itself isn't interrupted
+            context.checkCancelled();
+
+            context.progress("Replacing old " + config.getName());
+            replaceFolder(staging, modPackFolder);
+            installed = true;
+        } finally {
+            if (!installed) {
+                // Failed or cancelled (which also interrupts file channels), the old pack is still untouched
+                deleteDirectory(staging);
+            }
         }
 
-        copyDirectory(baseDirectory, modPackFolder);
+        getModPackIndex().update(modPackFolder, manifest);
+    }
 
-        unzip(downloaded.toFile(), modPackFolder);
+    /**
+     * Get the folder that a mod pack is built in before it replaces the installed one
+     * @param name The name of the mod pack
+     * @return The staging folder
+     */
+    private Path getInstallStagingFolder(String name) {
+        return steamFolder.resolve(STAGING_PREFIX + "install - " + name);
+    }
 
+    /**
+     * Replace a folder with a completely prepared one. The old folder is moved aside first and
+     * moved back if the prepared one can't be moved into its place.
+     * @param prepared The prepared folder
+     * @param target The folder to replace
+     * @throws IOException If the folder could not be replaced, the old one is still in place then
+     */
+    private void replaceFolder(Path prepared, Path target) throws IOException {
+        Path old = target.resolveSibling(STAGING_PREFIX + "old - " + target.getFileName());
+        if (Files.exists(old)) {
+            deleteDirectory(old);
+        }
+        boolean replacing = Files.exists(target);
+        if (replacing) {
+            Files.move(target, old, StandardCopyOption.ATOMIC_MOVE);
+        }
         try {
-            Files.delete(downloaded);
-        } catch (IOException e) {
-            e.printStackTrace();
+            Files.move(prepared, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            if (replacing) {
+                Files.move(old, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            throw e;
+        }
+        if (replacing) {
+            deleteDirectory(old);
         }
+    }
 
-        File propertiesFile = modPackFolder.resolve("modpack.properties").toFile();
-        Properties properties = loadModPackProperties(modPackFolder);
-        try (FileWriter writer = new FileWriter(propertiesFile)) {
-            properties.setProperty("name", config.getName());
-            properties.setProperty("version", version);
-            properties.store(writer, getName() + " " + getVersion() + " Config");
+    private static String getBaseGameVersion(Path baseDirectory) {
+        if (baseDirectory.getFileName().toString().startsWith("Among Us - Original - ")) {
+            return baseDirectory.getFileName().toString().substring("Among Us - Original - ".length());
         }
+        return null;
+    }
 
-        updateModPacks();
+    /**
+     * Look up the latest versions of all installed mod packs in parallel
+     * @return A future completed with the updates of the mod packs that have a newer version
+     */
+    public CompletableFuture<List<ModPackUpdate>> findUpdatesAsync() {
+        List<CompletableFuture<ModPackUpdate>> futures = new ArrayList<>();
+        for (ModPack modPack : getModPacks()) {
+            ModPackConfig config = getModPackConfig(modPack.getName());
+            if (config != null && modPack.getVersion() != null && !"unknown".equalsIgnoreCase(modPack.getVersion())) {
+                futures.add(config.getLatestVersionAsync().thenApply(latest -> latest != null && isVersionNewer(modPack.getVersion(), latest)
+                        ? new ModPackUpdate(modPack, config, latest, getUpdateBase(modPack))
+                        : null));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> futures.stream()
+                .map(CompletableFuture::join)
+                .filter(u -> u != null)
+                .collect(Collectors.toList()));
     }
 
-    private void unzip(File zipFile, Path targetFolder) throws IOException {
-        ZipFile zip = new ZipFile(zipFile);
-        zip.stream().forEach(e -> {
-            try {
-                Path entryPath = targetFolder.resolve(e.toString());
-                Files.createDirectories(entryPath.getParent());
-                if (e.isDirectory()) {
-                    Files.createDirectory(entryPath);
-                } else {
-                    Files.copy(zip.getInputStream(e), entryPath, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Get the original game that an update of a mod pack should be installed from. That is the
+     * snapshot of the current Steam game or the one the mod pack was installed from if there is none.
+     * A snapshot that is still being created counts too, installing from it waits for it to finish.
+     * @param modPack The mod pack
+     * @return The original game folder or <code>null</code> if none was found
+     */
+    private Path getUpdateBase(ModPack modPack) {
+        String steamVersion = steamGame != null ? getSteamGameVersion() : null;
+        if (steamVersion != null && isOriginalAvailable(getModPackFolder("Original - " + steamVersion))) {
+            return getModPackFolder("Original - " + steamVersion);
+        }
+        ModPackIndex.Entry entry = getModPackIndex().get(modPack.getPath());
+        if (entry != null && entry.getGameVersion() != null && isOriginalAvailable(getModPackFolder("Original - " + entry.getGameVersion()))) {
+            return getModPackFolder("Original - " + entry.getGameVersion());
+        }
+        return null;
+    }
+
+    private boolean isOriginalAvailable(Path originalGame) {
+        return preparing.containsKey(originalGame) || Files.isDirectory(originalGame);
+    }
+
+    /**
+     * Install multiple mod pack updates at once. All assets are downloaded concurrently, every
+     * original game is scanned once for all mod packs based on it and the mod packs are installed
+     * as soon as their download is done, at most as many at the same time as the update-parallelism
+     * property allows. A failed update doesn't stop the other ones. On cancellation no further
+     * installs are started, the running ones are waited for and downloads that don't get installed
+     * are deleted.
+     * @param updates The updates to install
+     * @param context The context to report progress to and check for cancellation
+     * @return The updates with their outcome
+     * @throws InterruptedException If the thread was interrupted while waiting for the updates
+     */
+    public List<ModPackUpdate> updateAll(List<ModPackUpdate> updates, TaskContext context) throws InterruptedException {
+        long start = System.nanoTime();
+        Map<Path, BaseFolder> bases = new HashMap<>();
+        for (ModPackUpdate update : updates) {
+            Path baseDirectory = update.getBaseDirectory();
+            if (baseDirectory == null) {
+                update.complete(new IOException("No original game found to update " + update.getModPack().getName() + " from"));
+            } else if (!bases.containsKey(baseDirectory)) {
+                context.checkCancelled();
+                context.progress("Scanning " + baseDirectory.getFileName());
+                try {
+                    bases.put(baseDirectory, scanBase(baseDirectory));
+                } catch (IOException e) {
+                    bases.put(baseDirectory, null);
+                    log(Level.SEVERE, "Unable to scan " + baseDirectory, e);
                 }
-            } catch (IOException e1) {
-                e1.printStackTrace();
             }
+        }
+
+        int parallelism = Math.max(1, getIntProperty("update-parallelism", 2));
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService installer = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, getName() + " Installer " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         });
-        zip.close();
-    }
+        AtomicInteger completed = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Map<CompletableFuture<File>, AtomicBoolean> downloads = new LinkedHashMap<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        try {
+            for (ModPackUpdate update : updates) {
+                if (update.getBaseDirectory() == null) {
+                    continue;
+                }
+                BaseFolder base = bases.get(update.getBaseDirectory());
+                ModPackConfig config = update.getConfig();
+                TaskContext updateContext = new TaskContext() {
+                    @Override
+                    public void progress(String message) {
+                        context.progress(completed.get() + "/" + updates.size() + " " + update.getModPack().getName() + ": " + message);
+                    }
 
-    public void launch(ModPack modPack, boolean viaSteam, boolean customServerMod) throws IOException {
-        if (Files.exists(modPack.getPath()) && Files.isDirectory(modPack.getPath())) {
-            Path gameFolder = viaSteam ? steamGame : steamFolder.resolve("Among Us Modded");
-            deleteDirectory(gameFolder);
-            try {
-                Files.delete(gameFolder);
-            } catch (IOException ignored) {}
-
-            copyDirectory(modPack.getPath(), gameFolder);
-
-            File propertiesFile = gameFolder.resolve("modpack.properties").toFile();
-            if (!propertiesFile.exists()) {
-                Properties properties = new Properties();
-                try (FileWriter writer = new FileWriter(propertiesFile)) {
-                    properties.setProperty("name", modPack.getName());
-                    if (modPack.getVersion() != null) {
-                        properties.setProperty("version", modPack.getVersion());
+                    @Override
+                    public boolean isCancelled() {
+                        return stopped.get() || context.isCancelled();
+                    }
+                };
+                CompletableFuture<UpdateAsset> assetFuture = CompletableFuture.supplyAsync(() -> {
+                    if (base == null) {
+                        throw new CompletionException(new IOException("Unable to scan " + update.getBaseDirectory()));
+                    }
+                    updateContext.checkCancelled();
+                    updateContext.progress("Downloading");
+                    UpdateAsset asset = config.getUpdateAsset(getBaseGameVersion(base.path));
+                    if (asset == null) {
+                        throw new CompletionException(new IOException("Unable to find a download for " + config.getName() + " from source " + config.getSource().getName() + "!"));
+                    }
+                    return asset;
+                }, getExecutor());
+                CompletableFuture<File> downloadFuture = assetFuture.thenApply(asset -> {
+                    File downloaded = config.getSource().download(config, asset);
+                    if (downloaded == null) {
+                        throw new CompletionException(new IOException("Unable to download " + asset.getFileName() + " for " + config.getName() + " from source " + config.getSource().getName() + "!"));
                     }
-                    properties.store(writer, getName() + " " + getVersion() + " Config");
+                    return downloaded;
+                });
+                // Whoever claims a download first owns it, either the install or the cleanup at the end
+                AtomicBoolean claimed = new AtomicBoolean();
+                downloads.put(downloadFuture, claimed);
+                futures.add(downloadFuture.thenAcceptAsync(downloaded -> {
+                    if (!claimed.compareAndSet(false, true)) {
+                        throw new CancellationException();
+                    }
+                    try {
+                        updateContext.checkCancelled();
+                        installModPack(base, config, update.getLatestVersion(), assetFuture.join(), downloaded, updateContext);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    } finally {
+                        releaseDownload(downloaded);
+                    }
+                }, installer).whenComplete((v, ex) -> {
+                    Throwable error = ex instanceof CompletionException ? ex.getCause() : ex;
+                    // Installs that were not started anymore because the updates stopped
+                    update.complete(error instanceof RejectedExecutionException ? new CancellationException() : error);
+                    completed.incrementAndGet();
+                    updateModPacks();
+                }));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                    // Recorded in the update
                 }
             }
-            if (customServerMod) {
-                String gameVersion = parseGameVersion(gameFolder);
-                Path bepInExFolder = gameFolder.resolve("BepInEx");
-                if (!Files.exists(bepInExFolder)) {
-                    File temp = bepInExConfig.downloadUpdate(gameVersion);
-                    if (temp != null) {
-                        unzip(temp, gameFolder);
+        } finally {
+            stopped.set(true);
+            installer.shutdown();
+            // The folders stay locked until the running installs have stopped at their next check
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (installer.awaitTermination(1, TimeUnit.SECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            // Downloads that finished but were never installed get deleted right away, still running ones when they finish
+            for (Map.Entry<CompletableFuture<File>, AtomicBoolean> download : downloads.entrySet()) {
+                download.getKey().thenAccept(downloaded -> {
+                    if (download.getValue().compareAndSet(false, true)) {
+                        releaseDownload(downloaded);
                     }
+                });
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        collectGarbage();
+        long done = updates.stream().filter(ModPackUpdate::isDone).count();
+        log(Level.INFO, "Updated " + done + "/" + updates.size() + " mod packs in " + (System.nanoTime() - start) / 1000000 + "ms");
+        for (ModPackUpdate update : updates) {
+            if (update.getError() != null) {
+                log(Level.SEVERE, "Error while updating " + update.getModPack().getName(), update.getError());
+            }
+        }
+        context.checkCancelled();
+        return updates;
+    }
+
+    /**
+     * Delete an installed mod pack
+     * @param modPack The mod pack to delete
+     * @throws IOException If the mod pack folder could not be deleted completely
+     */
+    public void deleteModPack(ModPack modPack) throws IOException {
+        deleteDirectory(modPack.getPath());
+        if (Files.exists(modPack.getPath())) {
+            getModPackIndex().update(modPack.getPath());
+            updateModPacks();
+            throw new IOException("Unable to delete all files of " + modPack.getName() + " in " + modPack.getPath());
+        }
+        getModPackIndex().remove(modPack.getPath());
+        updateModPacks();
+        collectGarbage();
+    }
+
+    /**
+     * Create the snapshot of the original game from the Steam game folder. It is copied into a
+     * staging folder, hashed while copying and only moved to its final location once it is
+     * complete, so a crash never leaves a partial snapshot that mod packs could be based on.
+     * The folders are passed in as they were when the task was queued as the Steam folder can
+     * change while it waits or runs.
+     * @param version The version of the game
+     * @param steamGame The Steam game folder to snapshot
+     * @param staging The folder to build the snapshot in
+     * @param originalGame The folder of the snapshot
+     * @param context The context to report progress to and check for cancellation
+     * @throws IOException If the snapshot could not be created
+     */
+    private void snapshotOriginal(String version, Path steamGame, Path staging, Path originalGame, TaskContext context) throws IOException {
+        if (Files.exists(staging)) {
+            context.progress("Removing incomplete snapshot");
+            deleteDirectory(staging);
+        }
+        context.progress("Cleaning " + steamGame.getFileName());
+        cleanDirectory(steamGame);
+        context.checkCancelled();
+
+        Manifest manifest = new Manifest();
+        try {
+            context.progress("Copying " + steamGame.getFileName());
+            try (Metrics.Sample sample = getMetrics().start("copyDirectory")) {
+                FileCopier.Result result = getFileCopier().copyHashing(getFileCopier().scan(steamGame), staging, manifest);
+                log(Level.INFO, "Copied and hashed " + steamGame + " to " + staging + ": " + result);
+                sample.success(result.getBytes());
+            }
+            context.checkCancelled();
+
+            Path propertiesFile = staging.resolve("modpack.properties");
+            Properties properties = new Properties();
+            try (OutputStream out = Files.newOutputStream(propertiesFile)) {
+                properties.setProperty("name", "Original");
+                properties.setProperty("version", version);
+                properties.store(out, getName() + " " + getVersion() + " Config");
+            }
+            manifest.put(new Manifest.Entry("modpack.properties", Files.size(propertiesFile), Files.getLastModifiedTime(propertiesFile).toMillis(), Hashes.sha256(propertiesFile), false));
+            manifest.save(staging);
+
+            context.progress("Storing Original " + version);
+            manifest = storeModPack(staging, manifest);
+            context.checkCancelled();
+
+            Files.move(staging, originalGame, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(staging);
+            throw e;
+        }
+        if (originalGame.getParent().equals(steamFolder)) {
+            getModPackIndex().update(originalGame, manifest);
+        }
+    }
+
+    private Path getSnapshotStagingFolder(Path steamFolder) {
+        return steamFolder.resolve(STAGING_PREFIX + "snapshot");
+    }
+
+    /**
+     * Scan a folder that mod packs get installed from so that it only has to be scanned once when
+     * installing multiple mod packs from it
+     * @param source The folder
+     * @return The scanned folder
+     * @throws IOException If the folder could not be scanned or stored
+     */
+    private BaseFolder scanBase(Path source) throws IOException {
+        Manifest manifest = null;
+        if (getBlobStore() != null) {
+            manifest = Manifest.load(source);
+            if (manifest == null) {
+                // Mod packs from before the store existed are stored on first use
+                manifest = storeModPack(source, null);
+            }
+        }
+        return new BaseFolder(source, getFileCopier().scan(source), manifest);
+    }
+
+    /**
+     * Copy a scanned mod pack folder, files in the blob store get linked instead of copied
+     * @param source The scanned folder to copy
+     * @param target The folder to copy to
+     * @throws IOException If a file could not be copied
+     */
+    private void copyModPack(BaseFolder source, Path target) throws IOException {
+        try (Metrics.Sample sample = getMetrics().start("copyDirectory")) {
+            BlobStore store = getBlobStore();
+            if (store == null || source.manifest == null) {
+                FileCopier.Result result = getFileCopier().copy(source.scan, target, null);
+                log(Level.INFO, "Copied " + source.path + " to " + target + ": " + result);
+                sample.success(result.getBytes());
+                return;
+            }
+            FileCopier.Result result = store.realize(source.scan, source.manifest, target);
+            log(Level.INFO, "Linked " + source.path + " to " + target + " from the store, copied " + result);
+            sample.success(result.getBytes());
+        }
+    }
+
+    /**
+     * Add the files of a mod pack folder to the blob store if it is enabled, otherwise only write its manifest
+     * @param folder The mod pack folder
+     * @param known The known manifest of the folder, only files that changed since then are hashed
+     * @return The new manifest
+     * @throws IOException If the files could not be stored
+     */
+    private Manifest storeModPack(Path folder, Manifest known) throws IOException {
+        BlobStore store = getBlobStore();
+        long start = System.nanoTime();
+        Manifest manifest = store != null
+                ? store.store(folder, known, createStager()::isCopied)
+                : getPackVerifier().createManifest(folder, known);
+        log(Level.INFO, "Stored " + manifest.getEntries().size() + " files of " + folder + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return manifest;
+    }
+
+    /**
+     * Verify the files of a mod pack against its manifest. Mod packs without a manifest get one
+     * created from their current files.
+     * @param modPack The mod pack to verify
+     * @param full Whether to hash every file instead of trusting files with an unchanged size and modification time
+     * @param context The context to report progress to
+     * @return The result of the verification
+     * @throws IOException If the files could not be read
+     */
+    public PackVerifier.Result verifyModPack(ModPack modPack, boolean full, TaskContext context) throws IOException {
+        Manifest manifest = Manifest.load(modPack.getPath());
+        if (manifest == null) {
+            context.progress("Creating manifest of " + modPack.getName());
+            log(Level.WARNING, modPack.getPath() + " has no manifest, creating it from the current files");
+            manifest = storeModPack(modPack.getPath(), null);
+        }
+        context.progress("Verifying " + modPack.getName());
+        PackVerifier.Result result = getPackVerifier().verify(modPack.getPath(), manifest, full, createStager()::isCopied);
+        log(Level.INFO, "Verified " + modPack.getPath() + ": " + result);
+        if (result.isIntact()) {
+            getModPackIndex().update(modPack.getPath(), manifest);
+        }
+        return result;
+    }
+
+    /**
+     * Verify a mod pack and restore the files that are missing or changed. Files are restored from
+     * the blob store, the original game the mod pack is based on, the Steam game if it has the same
+     * version or the cached asset of the mod pack, whichever has a copy with the expected hash first.
+     * @param modPack The mod pack to repair
+     * @param full Whether to hash every file instead of trusting files with an unchanged size and modification time
+     * @param context The context to report progress to and check for cancellation
+     * @return The problems that could not be repaired
+     * @throws IOException If the files could not be read or the manifest could not be saved
+     */
+    public List<PackVerifier.Problem> repairModPack(ModPack modPack, boolean full, TaskContext context) throws IOException {
+        PackVerifier.Result result = verifyModPack(modPack, full, context);
+        if (result.isIntact()) {
+            return Collections.emptyList();
+        }
+        context.checkCancelled();
+        Path folder = modPack.getPath();
+        Manifest manifest = Manifest.load(folder);
+        Properties properties = loadModPackProperties(folder);
+        String gameVersion = properties.getProperty("game-version", "Original".equals(modPack.getName()) ? modPack.getVersion() : null);
+
+        List<PackVerifier.Source> sources = new ArrayList<>();
+        BlobStore store = getBlobStore();
+        if (store != null) {
+            sources.add(store::restore);
+        }
+        Path originalGame = gameVersion != null ? getModPackFolder("Original - " + gameVersion) : null;
+        if (originalGame != null && !originalGame.equals(folder)) {
+            Manifest originalManifest = Manifest.load(originalGame);
+            if (originalManifest != null) {
+                Map<String, String> byHash = new HashMap<>();
+                for (Manifest.Entry entry : originalManifest.getEntries()) {
+                    byHash.put(entry.getSha256(), entry.getPath());
                 }
-                Path pluginsFolder = bepInExFolder.resolve("plugins");
-                if (!Files.exists(pluginsFolder)) {
-                    Files.createDirectories(pluginsFolder);
+                sources.add((expected, target) -> {
+                    String path = byHash.get(expected.getSha256());
+                    if (path == null) {
+                        return false;
+                    }
+                    Files.copy(originalGame.resolve(path), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    return true;
+                });
+            }
+        }
+        if (gameVersion != null && steamGame != null && gameVersion.equals(getSteamGameVersion())) {
+            sources.add((expected, target) -> {
+                Path file = steamGame.resolve(expected.getPath());
+                if (!Files.isRegularFile(file) || Files.size(file) != expected.getSize()) {
+                    return false;
                 }
-                if (Files.list(pluginsFolder).noneMatch(p -> p.getFileName().startsWith("Reactor") && p.getFileName().endsWith(".dll"))) {
-                    File temp = reactorConfig.downloadUpdate(gameVersion);
-                    if (temp != null) {
-                        unzip(temp, pluginsFolder);
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                return true;
+            });
+        }
+        File asset = getInstalledAsset(properties);
+        ZipFile zip = null;
+        if (asset != null) {
+            try {
+                zip = new ZipFile(asset);
+                ZipFile assetZip = zip;
+                sources.add((expected, target) -> {
+                    ZipEntry entry = assetZip.getEntry(expected.getPath());
+                    if (entry == null || entry.isDirectory() || entry.getSize() != expected.getSize()) {
+                        return false;
+                    }
+                    try (InputStream in = assetZip.getInputStream(entry)) {
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
                     }
+                    return true;
+                });
+            } catch (IOException e) {
+                log(Level.WARNING, "Unable to open cached asset " + asset + " for repairing " + modPack.getName() + "! " + e.getMessage());
+            }
+        }
+
+        try {
+            context.progress("Repairing " + modPack.getName());
+            List<PackVerifier.Problem> failed = getPackVerifier().repair(folder, manifest, result.getProblems(), sources);
+            log(Level.INFO, "Repaired " + (result.getProblems().size() - failed.size()) + " files of " + folder
+                    + (failed.isEmpty() ? "" : ", unable to repair " + failed));
+            // Link the restored files into the store again
+            getModPackIndex().update(folder, storeModPack(folder, manifest));
+            updateModPacks();
+            return failed;
+        } finally {
+            try {
+                if (zip != null) {
+                    zip.close();
                 }
-                if (Files.list(pluginsFolder).noneMatch(p -> p.getFileName().startsWith("Unify") && p.getFileName().endsWith(".dll"))) {
-                    File temp = customServerModConfig.downloadUpdate(gameVersion);
-                    if (temp != null) {
-                        Files.copy(temp.toPath(), pluginsFolder.resolve(temp.getName()));
+            } finally {
+                if (asset != null) {
+                    releaseDownload(asset);
+                }
+            }
+        }
+    }
+
+    private String getSteamGameVersion() {
+        try {
+            return parseGameVersion(steamGame);
+        } catch (IOException e) {
+            log(Level.WARNING, "Unable to get the version of " + steamGame + "! " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the cached asset that a mod pack was installed from
+     * @param properties The properties of the mod pack
+     * @return The cached asset or <code>null</code> if it is unknown or not cached anymore
+     */
+    private File getInstalledAsset(Properties properties) {
+        String source = properties.getProperty("asset-source");
+        String url = properties.getProperty("asset-url");
+        if (source == null || url == null) {
+            return null;
+        }
+        try {
+            return getAssetCache().get(source, new UpdateAsset(properties.getProperty("asset-version"), properties.getProperty("asset-file"), new URL(url)));
+        } catch (MalformedURLException e) {
+            log(Level.WARNING, "Invalid asset url " + url + "! " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Remove blobs that no installed mod pack uses anymore from the store and log the store usage
+     */
+    public void collectGarbage() {
+        BlobStore store = getBlobStore();
+        if (store != null) {
+            // List the folder instead of using the index as mod packs that are still being built in staging folders already reference blobs
+            try (Stream<Path> folders = Files.list(steamFolder)) {
+                BlobStore.Report report = store.collectGarbage(folders
+                        .filter(p -> (p.getFileName().toString().startsWith(ModPackIndex.FOLDER_PREFIX) || p.getFileName().toString().startsWith(STAGING_PREFIX + "snapshot") || p.getFileName().toString().startsWith(STAGING_PREFIX + "install - ")) && Files.isDirectory(p))
+                        .collect(Collectors.toList()));
+                log(Level.INFO, "Mod pack store: " + report);
+            } catch (IOException e) {
+                log(Level.SEVERE, "Error while collecting garbage in the mod pack store", e);
+            }
+        }
+    }
+
+    /**
+     * Get the store that deduplicates the files of the mod packs in the Steam folder. It can be
+     * disabled with the dedupe property.
+     * @return The blob store or <code>null</code> if it is disabled
+     */
+    public synchronized BlobStore getBlobStore() {
+        if (blobStore == null && steamFolder != null && !"false".equalsIgnoreCase(properties.getProperty("dedupe"))) {
+            blobStore = new BlobStore(this, steamFolder.resolve(".modpacklauncher-store"), getFileCopier());
+        }
+        return blobStore;
+    }
+
+    /**
+     * Get the verifier for the files of mod packs, uses the same amount of threads as copying
+     * @return The pack verifier
+     */
+    public synchronized PackVerifier getPackVerifier() {
+        if (packVerifier == null) {
+            packVerifier = new PackVerifier(getFileCopier());
+        }
+        return packVerifier;
+    }
+
+    /**
+     * Extract a zip asset into a folder while it is being downloaded. Cacheable assets are also written to the asset cache.
+     * @param source The source of the asset
+     * @param asset The asset to download
+     * @param targetFolder The folder to extract into
+     * @return <code>true</code> if it was extracted, <code>false</code> if the archive needs to be downloaded first
+     * @throws IOException If the download failed or files could not be written
+     */
+    private boolean extractWhileDownloading(ModPackSource source, UpdateAsset asset, Path targetFolder) throws IOException {
+        if (!asset.isZip() || !"true".equalsIgnoreCase(properties.getProperty("streaming-extract", "true"))) {
+            return false;
+        }
+        Path cacheFile = source.isCacheable(asset) ? getAssetCache().createTempFile() : null;
+        HttpURLConnection con = null;
+        Thread downloadThread = null;
+        try (Metrics.Sample downloadSample = getMetrics().start("downloadUpdate." + source.getName())) {
+            con = asset.connect(getUserAgent());
+            CountingInputStream counting = new CountingInputStream(con.getInputStream());
+            InputStream download = counting;
+            if (cacheFile != null) {
+                download = new TeeInputStream(download, Files.newOutputStream(cacheFile));
+            }
+            BoundedPipe pipe = new BoundedPipe(64 * 1024, 64);
+            downloadThread = pipe.start("Download " + asset.getFileName(), download);
+            try (InputStream in = pipe.getInputStream()) {
+                try (Metrics.Sample sample = getMetrics().start("unzip")) {
+                    ZipExtractor.Result result = getZipExtractor().extract(in, targetFolder);
+                    log(Level.INFO, "Extracted " + asset.getFileName() + " while downloading to " + targetFolder + ": " + result);
+                    if (!result.getFailures().isEmpty()) {
+                        throw new IOException("Unable to extract " + result.getFailures().size() + " entries of " + asset.getFileName() + ": " + result.getFailures());
                     }
+                    sample.success(result.getBytes());
                 }
-                Path bepInExConfigFolder = bepInExFolder.resolve("config");
-                if (!Files.exists(bepInExConfigFolder)) {
-                    Files.createDirectories(bepInExConfigFolder);
+                // The extractor read the archive to its end so the download is complete once the thread stopped
+                downloadThread.join();
+                long length = con.getContentLengthLong();
+                if (length >= 0 && counting.getCount() != length) {
+                    throw new ZipException("Received " + counting.getCount() + " of " + length + " bytes");
                 }
-                Path unifyConfig = bepInExConfigFolder.resolve("daemon.unify.reactor.cfg");
-                if (!Files.exists(unifyConfig)) {
-                    Files.copy(ModPackLauncher.class.getClassLoader().getResourceAsStream("daemon.unify.reactor.cfg"), unifyConfig);
+                if (cacheFile != null) {
+                    releaseDownload(getAssetCache().put(source.getName(), asset, cacheFile.toFile()));
                 }
+                downloadSample.success(counting.getCount());
+                return true;
+            } catch (ZipException e) {
+                log(Level.WARNING, "Unable to extract " + asset.getFileName() + " while downloading, downloading it first! " + e.getMessage());
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + asset.getFileName());
             }
-            if (viaSteam) {
+        } finally {
+            if (downloadThread != null && downloadThread.isAlive()) {
+                // The download thread closes the cache file once it stops, disconnecting ends a blocked read
+                con.disconnect();
+                joinUninterruptibly(downloadThread, 10000);
+            }
+            if (cacheFile != null) {
                 try {
-                    Desktop.getDesktop().browse(new URI("steam://run/945360/"));
-                } catch (URISyntaxException e) {
-                    e.printStackTrace();
+                    Files.deleteIfExists(cacheFile);
+                } catch (IOException e) {
+                    // Don't hide the actual outcome of the extraction
+                    log(Level.WARNING, "Unable to delete " + cacheFile + "! " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread, long timeout) {
+        long end = System.currentTimeMillis() + timeout;
+        boolean interrupted = false;
+        while (thread.isAlive() && System.currentTimeMillis() < end) {
+            try {
+                thread.join(Math.max(1, end - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void unzip(File zipFile, Path targetFolder) throws IOException {
+        try (Metrics.Sample sample = getMetrics().start("unzip")) {
+            ZipExtractor.Result result = getZipExtractor().extract(zipFile, targetFolder);
+            log(Level.INFO, "Extracted " + zipFile.getName() + " to " + targetFolder + ": " + result);
+            if (!result.getFailures().isEmpty()) {
+                throw new IOException("Unable to extract " + result.getFailures().size() + " entries of " + zipFile.getName() + ": " + result.getFailures());
+            }
+            sample.success(result.getBytes());
+        }
+    }
+
+    public void launch(ModPack modPack, boolean viaSteam, boolean customServerMod) throws IOException {
+        launch(modPack, viaSteam, customServerMod, TaskContext.NONE);
+    }
+
+    /**
+     * Launch a mod pack
+     * @param modPack The mod pack to launch
+     * @param viaSteam Whether to launch it through Steam, this uses the Steam game folder
+     * @param customServerMod Whether to install the custom server mod before launching
+     * @param context The context to report progress to and check for cancellation
+     * @throws IOException If the game folder could not be prepared or the game not started
+     */
+    public void launch(ModPack modPack, boolean viaSteam, boolean customServerMod, TaskContext context) throws IOException {
+        try (Metrics.Sample sample = getMetrics().start("launch")) {
+            if (Files.exists(modPack.getPath()) && Files.isDirectory(modPack.getPath())) {
+                Path gameFolder = getLaunchFolder(viaSteam);
+                context.progress("Preparing " + gameFolder.getFileName());
+                // Steam writes into its game folder (updates, verification) so it never gets links to the store
+                FileStager stager = viaSteam ? new FileStager(this, FileStager.Mode.COPY, FileStager.DEFAULT_COPIED_PATTERNS) : createStager();
+                new DirectorySync(this, getFileCopier(), stager).sync(modPack.getPath(), gameFolder);
+
+                File propertiesFile = gameFolder.resolve("modpack.properties").toFile();
+                if (!propertiesFile.exists()) {
+                    Properties properties = new Properties();
+                    try (FileWriter writer = new FileWriter(propertiesFile)) {
+                        properties.setProperty("name", modPack.getName());
+                        if (modPack.getVersion() != null) {
+                            properties.setProperty("version", modPack.getVersion());
+                        }
+                        properties.store(writer, getName() + " " + getVersion() + " Config");
+                    }
+                }
+                if (customServerMod) {
+                    context.checkCancelled();
+                    context.progress("Installing custom server mod");
+                    String gameVersion = parseGameVersion(gameFolder);
+                    Path bepInExFolder = gameFolder.resolve("BepInEx");
+                    if (!Files.exists(bepInExFolder)) {
+                        File temp = bepInExConfig.downloadUpdate(gameVersion);
+                        if (temp != null) {
+                            try {
+                                unzip(temp, gameFolder);
+                            } finally {
+                                releaseDownload(temp);
+                            }
+                        }
+                    }
+                    Path pluginsFolder = bepInExFolder.resolve("plugins");
+                    if (!Files.exists(pluginsFolder)) {
+                        Files.createDirectories(pluginsFolder);
+                    }
+                    if (Files.list(pluginsFolder).noneMatch(p -> p.getFileName().startsWith("Reactor") && p.getFileName().endsWith(".dll"))) {
+                        File temp = reactorConfig.downloadUpdate(gameVersion);
+                        if (temp != null) {
+                            try {
+                                unzip(temp, pluginsFolder);
+                            } finally {
+                                releaseDownload(temp);
+                            }
+                        }
+                    }
+                    if (Files.list(pluginsFolder).noneMatch(p -> p.getFileName().startsWith("Unify") && p.getFileName().endsWith(".dll"))) {
+                        File temp = customServerModConfig.downloadUpdate(gameVersion);
+                        if (temp != null) {
+                            try {
+                                Files.copy(temp.toPath(), pluginsFolder.resolve(temp.getName()));
+                            } finally {
+                                releaseDownload(temp);
+                            }
+                        }
+                    }
+                    Path bepInExConfigFolder = bepInExFolder.resolve("config");
+                    if (!Files.exists(bepInExConfigFolder)) {
+                        Files.createDirectories(bepInExConfigFolder);
+                    }
+                    Path unifyConfig = bepInExConfigFolder.resolve("daemon.unify.reactor.cfg");
+                    if (!Files.exists(unifyConfig)) {
+                        Files.copy(ModPackLauncher.class.getClassLoader().getResourceAsStream("daemon.unify.reactor.cfg"), unifyConfig);
+                    }
+                }
+                context.checkCancelled();
+                context.progress("Starting game");
+                if (viaSteam) {
+                    try {
+                        Desktop.getDesktop().browse(new URI("steam://run/945360/"));
+                    } catch (URISyntaxException e) {
+                        e.printStackTrace();
+                        startGame(gameFolder.resolve("Among Us.exe").toString());
+                    }
+                } else {
                     startGame(gameFolder.resolve("Among Us.exe").toString());
                 }
-            } else {
-                startGame(gameFolder.resolve("Among Us.exe").toString());
+                getModPackIndex().recordLaunch(modPack.getPath());
+                sample.success();
+            }
+        }
+    }
+
+    /**
+     * Get the folder that a mod pack is installed in
+     * @param name The name of the mod pack
+     * @return The folder
+     */
+    public Path getModPackFolder(String name) {
+        return steamFolder.resolve("Among Us - " + name);
+    }
+
+    /**
+     * Get the folder that the game gets launched from
+     * @param viaSteam Whether the game is launched through Steam
+     * @return The Steam game folder or the modded game folder
+     */
+    public Path getLaunchFolder(boolean viaSteam) {
+        return viaSteam ? steamGame : steamFolder.resolve("Among Us Modded");
+    }
+
+    /**
+     * Create a stager for the launch folder as configured in the properties
+     * @return The stager
+     */
+    private FileStager createStager() {
+        List<String> copiedPatterns = new ArrayList<>(FileStager.DEFAULT_COPIED_PATTERNS);
+        for (String pattern : properties.getProperty("launch-copied-files", "").split(",")) {
+            if (!pattern.trim().isEmpty()) {
+                copiedPatterns.add(pattern.trim());
             }
         }
+        return new FileStager(this, FileStager.Mode.fromString(properties.getProperty("launch-staging")), copiedPatterns);
     }
 
     private void startGame(String exe) throws IOException {
@@ -611,39 +1760,38 @@ public class ModPackLauncher {
     }
 
     private void deleteDirectory(Path folder) {
-        try {
-            Files.list(folder).forEach(p -> {
-                if (Files.isDirectory(p)) {
-                    deleteDirectory(p);
-                } else {
-                    try {
-                        Files.delete(p);
-                    } catch (IOException e) {
-                        log(Level.SEVERE, "Unable to delete file " + p, e);
-                    }
-                }
+        try (Metrics.Sample sample = getMetrics().start("deleteDirectory")) {
+            AtomicBoolean failed = new AtomicBoolean(false);
+            FileCopier.delete(folder, (p, e) -> {
+                failed.set(true);
+                log(Level.SEVERE, "Unable to delete " + p, e);
             });
-            Files.delete(folder);
-        } catch (NoSuchFileException ignored) {
-        } catch (IOException e) {
-            log(Level.SEVERE, "Error while deleting folder " + folder, e);
+            if (!failed.get()) {
+                sample.success();
+            }
         }
     }
 
-    private void copyDirectory(Path source, Path target) throws IOException {
-        Files.walkFileTree(source,  new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                Files.createDirectories(target.resolve(source.relativize(dir)));
-                return FileVisitResult.CONTINUE;
-            }
+    /**
+     * Get the engine used for copying folders, uses the amount of threads configured by the copy-threads property
+     * @return The file copier
+     */
+    public synchronized FileCopier getFileCopier() {
+        if (fileCopier == null) {
+            fileCopier = new FileCopier(getIntProperty("copy-threads", Runtime.getRuntime().availableProcessors()));
+        }
+        return fileCopier;
+    }
 
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Files.copy(file, target.resolve(source.relativize(file)));
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    /**
+     * Get the engine used for extracting archives, uses the amount of threads configured by the extract-threads property
+     * @return The zip extractor
+     */
+    public synchronized ZipExtractor getZipExtractor() {
+        if (zipExtractor == null) {
+            zipExtractor = new ZipExtractor(getIntProperty("extract-threads", Runtime.getRuntime().availableProcessors()));
+        }
+        return zipExtractor;
     }
 
     private String parseGameVersion(Path directory) throws IOException {
@@ -651,32 +1799,40 @@ public class ModPackLauncher {
             throw new NotDirectoryException(directory + " is not a directory!");
         }
 
-        Path gameFile = directory.resolve("Among Us_Data/globalgamemanagers");
+        try (Metrics.Sample sample = getMetrics().start("parseGameVersion")) {
+            String version = gameVersionScanner.getVersion(directory.resolve("Among Us_Data/globalgamemanagers"));
+            sample.success();
+            return version;
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(gameFile)))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if ((line.contains("Innersloth") || line.contains("public.app-category.games")) && line.contains("Among Us")) {
-                    Matcher matcher = VERSION_PATTERN.matcher(line);
-                    if (matcher.matches()) {
-                        return matcher.group(1);
-                    }
-                }
+    /**
+     * Get the folders of the original games, including ones that are still being prepared
+     * @return The folders of the original games from the oldest to the newest version
+     */
+    public List<Path> getOriginalGames() {
+        List<Path> originalGames = new ArrayList<>(getModPackIndex().getOriginalGames());
+        for (Path folder : preparing.keySet()) {
+            if (!originalGames.contains(folder)) {
+                originalGames.add(folder);
             }
         }
-
-        return null;
+        Version.sort(originalGames, folder -> folder.getFileName().toString().substring((ModPackIndex.FOLDER_PREFIX + "Original - ").length()));
+        return originalGames;
     }
 
-    public List<Path> getOriginalGames() {
-        try {
-            return Files.list(steamFolder)
-                    .filter(p -> Files.isDirectory(p))
-                    .filter(p -> p.getFileName().toString().startsWith("Among Us - Original - "))
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * A folder that mod packs get installed from with its files and manifest
+     */
+    private static class BaseFolder {
+        private final Path path;
+        private final FileCopier.Scan scan;
+        private final Manifest manifest;
+
+        private BaseFolder(Path path, FileCopier.Scan scan, Manifest manifest) {
+            this.path = path;
+            this.scan = scan;
+            this.manifest = manifest;
         }
-        return Collections.emptyList();
     }
 }
@@ -1,6 +1,8 @@
 package tv.moep.amongus.modpacklauncher;
 
+import tv.moep.amongus.modpacklauncher.io.PackVerifier;
 import tv.moep.amongus.modpacklauncher.remote.ManualSource;
+import tv.moep.amongus.modpacklauncher.task.TaskScheduler;
 
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListModel;
@@ -10,10 +12,13 @@ import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
@@ -37,8 +42,13 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
 import java.util.logging.Level;
 
 /*
@@ -68,11 +78,15 @@ public class ModPackLauncherGui extends JFrame {
 
     private final ModPackLauncher launcher;
     private final JList<ModPackListEntry> packList;
+    private final DefaultListModel<ModPackListEntry> packListModel = new DefaultListModel<>();
+    private final JPanel taskPanel;
+    private final Queue<Runnable> prompts = new ArrayDeque<>();
+    private boolean showingPrompt = false;
 
     public ModPackLauncherGui(ModPackLauncher launcher) {
         super(launcher.getName() + " v" + launcher.getVersion());
         this.launcher = launcher;
-        setIconImage(launcher.getIcon());
+        launcher.getIconAsync().thenAccept(icon -> SwingUtilities.invokeLater(() -> setIconImage(icon)));
         getContentPane().setBackground(new Color(0x161515));
 
         setLayout(new BoxLayout(getContentPane(), BoxLayout.Y_AXIS));
@@ -86,10 +100,7 @@ public class ModPackLauncherGui extends JFrame {
         pathField.setBackground(ELEMENT_BACKGROUND);
         pathField.setForeground(ELEMENT_FOREROUND.darker());
 
-        Path steamFolder = launcher.getSteamFolder();
-        if (steamFolder != null && Files.exists(steamFolder) && Files.isDirectory(steamFolder)) {
-            pathField.setText(steamFolder.toAbsolutePath().toString());
-        }
+        pathField.setText("Loading Steam folder...");
         pathField.setEditable(false);
         pathField.setBorder(new CompoundBorder(new LineBorder(Color.BLACK, 1), new EmptyBorder(4, 4, 4, 4)));
 
@@ -97,6 +108,9 @@ public class ModPackLauncherGui extends JFrame {
         buttonSelectPath.setFont(getContentPane().getFont().deriveFont(Font.BOLD, 14f));
         buttonSelectPath.setBorder(new CompoundBorder(new LineBorder(Color.BLACK, 2), new EmptyBorder(3, 3, 3, 3)));
         ActionListener steamFolderSelector = e -> {
+            if (!buttonSelectPath.isEnabled()) {
+                return;
+            }
             String[] paths = pathField.getText().split("\" \"");
             String path = "";
             if (paths.length > 0) {
@@ -113,10 +127,24 @@ public class ModPackLauncherGui extends JFrame {
             chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
             chooser.showOpenDialog(null);
             if (chooser.getSelectedFile() != null) {
-                pathField.setText(chooser.getSelectedFile().getAbsolutePath());
-                launcher.setSteamFolder(chooser.getSelectedFile().toPath());
-                updateModPackList();
-                pack();
+                Path selected = chooser.getSelectedFile().toPath();
+                // Loading the folder reads the mod packs and might snapshot the game, so not on the EDT
+                buttonSelectPath.setEnabled(false);
+                pathField.setText("Loading Steam folder...");
+                launcher.getTaskScheduler().submit("Select " + selected, Collections.singletonList(selected), context -> {
+                    launcher.setSteamFolder(selected);
+                    return null;
+                }).onComplete((r, ex) -> {
+                    buttonSelectPath.setEnabled(true);
+                    Path steamFolder = launcher.getSteamFolder();
+                    pathField.setText(steamFolder != null ? steamFolder.toAbsolutePath().toString() : "");
+                    if (ex != null && !(ex instanceof CancellationException)) {
+                        JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        launcher.log(Level.SEVERE, "Error while selecting the Steam folder " + selected, ex);
+                    }
+                    updateModPackList();
+                    pack();
+                });
             }
         };
         pathField.addMouseListener(new MouseAdapter() {
@@ -131,16 +159,61 @@ public class ModPackLauncherGui extends JFrame {
         pathLine.add(buttonSelectPath);
         getContentPane().add(pathLine);
 
-        packList = new JList<>();
+        // The Steam folder is loaded in the background, selecting another one has to wait for that
+        buttonSelectPath.setEnabled(false);
+        launcher.getSteamFolderReady().whenComplete((v, ex) -> SwingUtilities.invokeLater(() -> {
+            Path steamFolder = launcher.getSteamFolder();
+            if (steamFolder != null && Files.exists(steamFolder) && Files.isDirectory(steamFolder)) {
+                pathField.setText(steamFolder.toAbsolutePath().toString());
+            } else {
+                pathField.setText("");
+            }
+            buttonSelectPath.setEnabled(true);
+            updateModPackList();
+        }));
+
+        packList = new JList<>(packListModel);
         packList.setFont(getContentPane().getFont().deriveFont(14f));
         packList.setBackground(ELEMENT_BACKGROUND);
         packList.setForeground(ELEMENT_FOREROUND);
         packList.setSelectionBackground(ELEMENT_BACKGROUND);
         packList.setSelectionForeground(new Color(0xF21717));
+        packList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showPopup(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showPopup(e);
+            }
+
+            private void showPopup(MouseEvent e) {
+                int index = packList.locationToIndex(e.getPoint());
+                if (e.isPopupTrigger() && index > -1) {
+                    packList.setSelectedIndex(index);
+                    ModPack modPack = packList.getModel().getElementAt(index).getModPack();
+                    JPopupMenu menu = new JPopupMenu();
+                    JMenuItem deleteItem = new JMenuItem("Delete " + modPack.getName());
+                    deleteItem.addActionListener(event -> deleteModPack(modPack));
+                    menu.add(deleteItem);
+                    if (!modPack.isPreparing()) {
+                        JMenuItem verifyItem = new JMenuItem("Verify files");
+                        verifyItem.addActionListener(event -> verifyModPack(modPack));
+                        menu.add(verifyItem);
+                        JMenuItem repairItem = new JMenuItem("Repair files");
+                        repairItem.addActionListener(event -> repairModPack(modPack));
+                        menu.add(repairItem);
+                    }
+                    menu.show(packList, e.getX(), e.getY());
+                }
+            }
+        });
 
         getContentPane().add(packList);
 
-        updateModPackList();
+        launcher.onModPacksChanged(changes -> SwingUtilities.invokeLater(() -> applyModPackChanges(changes)));
 
         JPanel addMoreLine = new JPanel();
         addMoreLine.setBackground(null);
@@ -175,13 +248,18 @@ public class ModPackLauncherGui extends JFrame {
 
         launchGame.addActionListener(e -> {
             if (packList.getSelectedIndex() > -1 && packList.getSelectedIndex() < packList.getModel().getSize()) {
-                ModPackListEntry modPack = packList.getModel().getElementAt(packList.getSelectedIndex());
-                try {
-                    launcher.launch(modPack.getModPack(), steamBox.isSelected(), customServerBox.isSelected());
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    launcher.log(Level.SEVERE, "Error while starting", ex);
-                }
+                ModPack modPack = packList.getModel().getElementAt(packList.getSelectedIndex()).getModPack();
+                boolean viaSteam = steamBox.isSelected();
+                boolean customServerMod = customServerBox.isSelected();
+                launcher.getTaskScheduler().submit("Launch " + modPack.getName(), Arrays.asList(launcher.getLaunchFolder(viaSteam), modPack.getPath()), context -> {
+                    launcher.launch(modPack, viaSteam, customServerMod, context);
+                    return null;
+                }).onComplete((r, ex) -> {
+                    if (ex != null && !(ex instanceof CancellationException)) {
+                        JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        launcher.log(Level.SEVERE, "Error while starting", ex);
+                    }
+                });
             } else {
                 JOptionPane.showMessageDialog(this, "Please select the ModPack to launch!");
             }
@@ -193,14 +271,49 @@ public class ModPackLauncherGui extends JFrame {
         launchLine.add(launchGame);
         getContentPane().add(launchLine);
 
+        taskPanel = new JPanel();
+        taskPanel.setBackground(null);
+        taskPanel.setLayout(new BoxLayout(taskPanel, BoxLayout.Y_AXIS));
+        getContentPane().add(taskPanel);
+        launcher.getTaskScheduler().onSubmit(this::addTask);
+
         pack();
         //setLocationByPlatform(true);
         setLocationRelativeTo(null);
 
-        if (launcher.hasNewerVersion()) {
+        setVisible(true);
+
+        // Check the launcher and all installed mod packs in parallel and offer the mod pack updates together
+        launcher.getLatestVersionAsync().thenAccept(latest -> SwingUtilities.invokeLater(() -> queuePrompt(() -> offerLauncherUpdate(latest))));
+        launcher.getSteamFolderReady()
+                .thenCompose(v -> launcher.findUpdatesAsync())
+                .thenAccept(updates -> SwingUtilities.invokeLater(() -> queuePrompt(() -> offerUpdates(updates))));
+    }
+
+    /**
+     * Queue a modal prompt so that only one is displayed at a time. Has to be called on the EDT.
+     * @param prompt The prompt to display
+     */
+    private void queuePrompt(Runnable prompt) {
+        prompts.add(prompt);
+        if (!showingPrompt) {
+            showingPrompt = true;
+            try {
+                Runnable next;
+                while ((next = prompts.poll()) != null && isDisplayable()) {
+                    next.run();
+                }
+            } finally {
+                showingPrompt = false;
+            }
+        }
+    }
+
+    private void offerLauncherUpdate(String latest) {
+        if (ModPackLauncher.isVersionNewer(launcher.getVersion(), latest)) {
             int n = JOptionPane.showOptionDialog(
                     this,
-                    "The update " + launcher.getLatestVersion() + " is available! (Installed: " + launcher.getVersion() + ") ",
+                    "The update " + latest + " is available! (Installed: " + launcher.getVersion() + ") ",
                     "Update available!",
                     JOptionPane.YES_NO_OPTION,
                     JOptionPane.INFORMATION_MESSAGE,
@@ -213,58 +326,95 @@ public class ModPackLauncherGui extends JFrame {
                     Desktop.getDesktop().browse(new URI(launcher.getUpdateUrl()));
                     ModPackLauncherGui.this.setVisible(false);
                     ModPackLauncherGui.this.dispose();
-                    return;
                 } catch (URISyntaxException | IOException ignored) {}
             }
         }
-        setVisible(true);
+    }
 
-        boolean updated = false;
-        for (ModPack modPack : launcher.getModPacks()) {
-            ModPackConfig config = launcher.getModPackConfig(modPack.getName());
-            if (config != null && modPack.getVersion() != null && !"unknown".equalsIgnoreCase(modPack.getVersion())) {
-                String latest = config.getLatestVersion();
-                if (launcher.isVersionNewer(modPack.getVersion(), latest)) {
-                    int n = JOptionPane.showOptionDialog(
-                            this,
-                            "Mod " + modPack.getName() + " has a new version " + latest + " available! (Installed: " + modPack.getVersion() + ") ",
-                            "Mod " + modPack.getName() + " update available!",
-                            JOptionPane.YES_NO_OPTION,
-                            JOptionPane.INFORMATION_MESSAGE,
-                            null,
-                            new String[] {"Update Mod", "Show update info", "Don't update"},
-                            "Update Mod"
-                    );
-                    if (n == 0) {
-                        Path baseDirectory = getBaseDirectory(this, config);
-                        if (baseDirectory == null) {
-                            return;
-                        }
-                        try {
-                            JFrame loading = displayLoading();
-                            String version = config.getLatestVersion();
-                            launcher.installModPack(baseDirectory, config, version);
-                            updateModPackList();
-                            loading.setVisible(false);
-                            loading.dispose();
-                            JOptionPane.showMessageDialog(this, "Installed " + config.getName() + " " + version + " from " + config.getSource().getName());
-                        } catch (IOException ex) {
-                            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                            ex.printStackTrace();
-                        }
-
-                        updated = true;
-                    } else if (n == 1) {
-                        try {
-                            Desktop.getDesktop().browse(new URI(config.getUpdateUrl()));
-                        } catch (URISyntaxException | IOException ignored) {}
+    private void offerUpdates(List<ModPackUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        if (updates.size() == 1) {
+            offerUpdate(updates.get(0).getModPack(), updates.get(0).getConfig(), updates.get(0).getLatestVersion());
+            return;
+        }
+        StringBuilder message = new StringBuilder("New versions are available for " + updates.size() + " mods:\n");
+        for (ModPackUpdate update : updates) {
+            message.append(update).append("\n");
+        }
+        int n = JOptionPane.showOptionDialog(
+                this,
+                message.toString(),
+                "Mod updates available!",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.INFORMATION_MESSAGE,
+                null,
+                new String[] {"Update all", "Choose individually", "Don't update"},
+                "Update all"
+        );
+        if (n == 0) {
+            updateAll(updates);
+        } else if (n == 1) {
+            for (ModPackUpdate update : updates) {
+                queuePrompt(() -> offerUpdate(update.getModPack(), update.getConfig(), update.getLatestVersion()));
+            }
+        }
+    }
+
+    private void updateAll(List<ModPackUpdate> updates) {
+        List<Path> folders = new ArrayList<>();
+        for (ModPackUpdate update : updates) {
+            folders.add(launcher.getModPackFolder(update.getConfig().getName()));
+            if (update.getBaseDirectory() != null && !folders.contains(update.getBaseDirectory())) {
+                folders.add(update.getBaseDirectory());
+            }
+        }
+        launcher.getTaskScheduler().submit("Update " + updates.size() + " mods", folders, context -> {
+            return launcher.updateAll(updates, context);
+        }).onComplete((result, ex) -> {
+            if (ex == null) {
+                StringBuilder message = new StringBuilder();
+                boolean failed = false;
+                for (ModPackUpdate update : result) {
+                    if (update.isDone()) {
+                        message.append("Updated ").append(update).append("\n");
+                    } else {
+                        failed = true;
+                        message.append("Failed to update ").append(update.getModPack().getName()).append(": ")
+                                .append(update.getError() != null ? update.getError().getMessage() : "Unknown error").append("\n");
                     }
                 }
+                JOptionPane.showMessageDialog(this, message.toString(), "Mod updates", failed ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+            } else if (!(ex instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                launcher.log(Level.SEVERE, "Error while updating mods", ex);
             }
-        }
+        });
+    }
 
-        if (updated) {
-            updateModPackList();
+    private void offerUpdate(ModPack modPack, ModPackConfig config, String latest) {
+        if (ModPackLauncher.isVersionNewer(modPack.getVersion(), latest)) {
+            int n = JOptionPane.showOptionDialog(
+                    this,
+                    "Mod " + modPack.getName() + " has a new version " + latest + " available! (Installed: " + modPack.getVersion() + ") ",
+                    "Mod " + modPack.getName() + " update available!",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.INFORMATION_MESSAGE,
+                    null,
+                    new String[] {"Update Mod", "Show update info", "Don't update"},
+                    "Update Mod"
+            );
+            if (n == 0) {
+                Path baseDirectory = getBaseDirectory(this, config);
+                if (baseDirectory != null) {
+                    install(this, baseDirectory, config, latest);
+                }
+            } else if (n == 1) {
+                try {
+                    Desktop.getDesktop().browse(new URI(config.getUpdateUrl()));
+                } catch (URISyntaxException | IOException ignored) {}
+            }
         }
     }
 
@@ -272,16 +422,16 @@ public class ModPackLauncherGui extends JFrame {
         if (launcher.getSteamGame() == null || !Files.exists(launcher.getSteamGame())) {
             JOptionPane.showMessageDialog(this, "Among Us not found in Steam game folder?");
         } else {
-            DefaultListModel<ModPackListEntry> model = new DefaultListModel<>();
+            packListModel.clear();
             int selected = -1;
-            for (int i = 0; i < launcher.getModPacks().size(); i++) {
-                ModPack modPack = launcher.getModPacks().get(i);
+            List<ModPack> modPacks = launcher.getModPacks();
+            for (int i = 0; i < modPacks.size(); i++) {
+                ModPack modPack = modPacks.get(i);
                 if (modPack.getId().equals(launcher.getSelected())) {
                     selected = i;
                 }
-                model.addElement(new ModPackListEntry(modPack));
+                packListModel.addElement(new ModPackListEntry(modPack));
             }
-            packList.setModel(model);
             if (selected > -1) {
                 packList.setSelectedIndex(selected);
             }
@@ -289,6 +439,64 @@ public class ModPackLauncherGui extends JFrame {
         pack();
     }
 
+    /**
+     * Apply changes of the installed mod packs to the list without rebuilding it
+     * @param changes The changes
+     */
+    private void applyModPackChanges(List<ModPackChange> changes) {
+        ModPackListEntry selectedEntry = packList.getSelectedValue();
+        Path selected = selectedEntry != null ? selectedEntry.getModPack().getPath() : null;
+        for (ModPackChange change : changes) {
+            // Changes might already be included if the list was rebuilt in the meantime
+            Path path = change.getModPack() != null ? change.getModPack().getPath() : change.getPrevious().getPath();
+            int current = indexOf(path);
+            if (change.getModPack() == null) {
+                if (current > -1) {
+                    packListModel.remove(current);
+                }
+                continue;
+            }
+            ModPackListEntry entry = new ModPackListEntry(change.getModPack());
+            if (current > -1 && isInOrder(current, change.getModPack())) {
+                // Replacing in place keeps the selection
+                packListModel.set(current, entry);
+                continue;
+            }
+            if (current > -1) {
+                packListModel.remove(current);
+            }
+            int index = 0;
+            while (index < packListModel.getSize() && ModPackIndex.ORDER.compare(packListModel.get(index).getModPack(), change.getModPack()) < 0) {
+                index++;
+            }
+            packListModel.add(index, entry);
+        }
+        if (selected != null && packList.getSelectedIndex() == -1) {
+            int index = indexOf(selected);
+            if (index > -1) {
+                packList.setSelectedIndex(index);
+            }
+        }
+        if (getPreferredSize().height > getHeight()) {
+            // Only grow the window if the list doesn't fit anymore
+            pack();
+        }
+    }
+
+    private int indexOf(Path path) {
+        for (int i = 0; i < packListModel.getSize(); i++) {
+            if (packListModel.get(i).getModPack().getPath().equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isInOrder(int index, ModPack modPack) {
+        return (index == 0 || ModPackIndex.ORDER.compare(packListModel.get(index - 1).getModPack(), modPack) < 0)
+                && (index == packListModel.getSize() - 1 || ModPackIndex.ORDER.compare(packListModel.get(index + 1).getModPack(), modPack) >= 0);
+    }
+
     private class ModPackListEntry {
         private final ModPack modPack;
 
@@ -297,7 +505,7 @@ public class ModPackLauncherGui extends JFrame {
         }
 
         public String toString() {
-            return modPack.getName() + (modPack.getVersion() != null ? " (" + modPack.getVersion() + ")" : "");
+            return modPack.getName() + (modPack.getVersion() != null ? " (" + modPack.getVersion() + ")" : "") + (modPack.isPreparing() ? " - preparing..." : "");
         }
 
         public ModPack getModPack() {
@@ -379,20 +587,8 @@ public class ModPackLauncherGui extends JFrame {
                     setVisible(false);
                     dispose();
                     Path baseDirectory = getBaseDirectory(parent, config);
-                    if (baseDirectory == null) {
-                        return;
-                    }
-                    try {
-                        JFrame loading = displayLoading();
-                        String version = config.getLatestVersion();
-                        launcher.installModPack(baseDirectory, config, version);
-                        updateModPackList();
-                        loading.setVisible(false);
-                        loading.dispose();
-                        JOptionPane.showMessageDialog(parent, "Installed " + config.getName() + " " + version + " from " + config.getSource().getName());
-                    } catch (IOException ex) {
-                        JOptionPane.showMessageDialog(parent, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                        ex.printStackTrace();
+                    if (baseDirectory != null) {
+                        install(parent, baseDirectory, config, null);
                     }
                 });
 
@@ -441,19 +637,8 @@ public class ModPackLauncherGui extends JFrame {
                 setVisible(false);
                 dispose();
                 Path baseDirectory = getBaseDirectory(parent, config);
-                if (baseDirectory == null) {
-                    return;
-                }
-                try {
-                    JFrame loading = displayLoading();
-                    launcher.installModPack(baseDirectory, config, "unknown");
-                    updateModPackList();
-                    loading.setVisible(false);
-                    loading.dispose();
-                    JOptionPane.showMessageDialog(parent, "Installed " + config.getName());
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(parent, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    ex.printStackTrace();
+                if (baseDirectory != null) {
+                    install(parent, baseDirectory, config, "unknown");
                 }
             });
             manualInstallLine.add(linkButton);
@@ -549,6 +734,10 @@ public class ModPackLauncherGui extends JFrame {
 
     private Path getBaseDirectory(JFrame parent, ModPackConfig modPack) {
         List<Path> originalGames = launcher.getOriginalGames();
+        if (originalGames.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "No original game found to install " + modPack.getName() + " on!", "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
         Object gameVersion = JOptionPane.showInputDialog(
                 parent,
                 "Select game version for " + modPack.getName() + ":",
@@ -561,25 +750,117 @@ public class ModPackLauncherGui extends JFrame {
         return gameVersion == null ? null : launcher.getSteamFolder().resolve("Among Us - Original - " + gameVersion);
     }
 
-    private JFrame displayLoading() {
-        JFrame frame = new JFrame("Loading...");
-        // TODO: Display overlayed loading gif
-        //frame.setUndecorated(true);
-        //frame.setBackground(new Color(0, 0, 0, 0));
-        frame.setIconImage(launcher.getLoadingImage());
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
-
-        frame.getContentPane().add(new JLabel("Loading..."));
-
-        //JLabel image = new JLabel(new ImageIcon(launcher.getClass().getClassLoader().getResource("images/loading.gif")));
-        //image.setBounds(0, 0, 100, 100);
-        //frame.getContentPane().add(image);
-
-        frame.pack();
-        frame.setLocationRelativeTo(this);
-        frame.setVisible(true);
-        return frame;
+    /**
+     * Install a mod pack in the background
+     * @param parent The frame to display the result on
+     * @param baseDirectory The game folder to base the mod pack on
+     * @param config The config of the mod pack
+     * @param version The version to install, <code>null</code> to look up the latest one
+     */
+    private void install(JFrame parent, Path baseDirectory, ModPackConfig config, String version) {
+        // The base directory might still be prepared so wait for that
+        launcher.getTaskScheduler().submit("Install " + config.getName(), Arrays.asList(launcher.getModPackFolder(config.getName()), baseDirectory), context -> {
+            String installVersion = version != null ? version : config.getLatestVersion();
+            launcher.installModPack(baseDirectory, config, installVersion, context);
+            return installVersion;
+        }).onComplete((installed, ex) -> {
+            if (ex == null) {
+                JOptionPane.showMessageDialog(parent, "Installed " + config.getName() + ("unknown".equals(installed) ? "" : " " + installed + " from " + config.getSource().getName()));
+            } else if (!(ex instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(parent, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                launcher.log(Level.SEVERE, "Error while installing " + config.getName(), ex);
+            }
+        });
+    }
+
+    private void deleteModPack(ModPack modPack) {
+        int n = JOptionPane.showConfirmDialog(this,
+                "Do you really want to delete " + modPack.getName() + (modPack.getVersion() != null ? " " + modPack.getVersion() : "") + "?",
+                "Delete " + modPack.getName(),
+                JOptionPane.YES_NO_OPTION);
+        if (n != JOptionPane.YES_OPTION) {
+            return;
+        }
+        launcher.getTaskScheduler().submit("Delete " + modPack.getName(), Collections.singletonList(modPack.getPath()), context -> {
+            launcher.deleteModPack(modPack);
+            return null;
+        }).onComplete((r, ex) -> {
+            if (ex != null && !(ex instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                launcher.log(Level.SEVERE, "Error while deleting " + modPack.getName(), ex);
+            }
+        });
+    }
+
+    private void verifyModPack(ModPack modPack) {
+        launcher.getTaskScheduler().submit("Verify " + modPack.getName(), Collections.singletonList(modPack.getPath()), context -> {
+            return launcher.verifyModPack(modPack, false, context);
+        }).onComplete((result, ex) -> {
+            if (ex == null) {
+                if (result.isIntact()) {
+                    JOptionPane.showMessageDialog(this, "All " + result.getFiles() + " files of " + modPack.getName() + " are intact.");
+                    return;
+                }
+                int n = JOptionPane.showConfirmDialog(this,
+                        "Found " + result.getProblems().size() + " problems in " + modPack.getName() + ":\n" + formatProblems(result.getProblems()) + "\nDo you want to repair them?",
+                        "Verify " + modPack.getName(),
+                        JOptionPane.YES_NO_OPTION);
+                if (n == JOptionPane.YES_OPTION) {
+                    repairModPack(modPack);
+                }
+            } else if (!(ex instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                launcher.log(Level.SEVERE, "Error while verifying " + modPack.getName(), ex);
+            }
+        });
+    }
+
+    private void repairModPack(ModPack modPack) {
+        launcher.getTaskScheduler().submit("Repair " + modPack.getName(), Collections.singletonList(modPack.getPath()), context -> {
+            return launcher.repairModPack(modPack, true, context);
+        }).onComplete((failed, ex) -> {
+            if (ex == null) {
+                if (failed.isEmpty()) {
+                    JOptionPane.showMessageDialog(this, "Repaired " + modPack.getName());
+                } else {
+                    JOptionPane.showMessageDialog(this, "Unable to repair " + failed.size() + " files of " + modPack.getName() + ", try reinstalling it:\n" + formatProblems(failed), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            } else if (!(ex instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                launcher.log(Level.SEVERE, "Error while repairing " + modPack.getName(), ex);
+            }
+        });
+    }
+
+    private static String formatProblems(List<PackVerifier.Problem> problems) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < problems.size() && i < 10; i++) {
+            sb.append(problems.get(i)).append("\n");
+        }
+        if (problems.size() > 10) {
+            sb.append("and ").append(problems.size() - 10).append(" more\n");
+        }
+        return sb.toString();
+    }
+
+    private void addTask(TaskScheduler.Task<?> task) {
+        JPanel line = new JPanel();
+        line.setBackground(null);
+        JLabel label = new JLabel(task.getName() + ": " + task.getProgress());
+        label.setForeground(ELEMENT_FOREROUND);
+        line.add(label);
+        JButton cancelButton = new HoverButton("Cancel", ELEMENT_BACKGROUND, ELEMENT_FOREROUND.darker(), ELEMENT_BACKGROUND.darker(), ELEMENT_FOREROUND);
+        cancelButton.setBorder(new CompoundBorder(new LineBorder(Color.BLACK, 1), new EmptyBorder(2, 2, 2, 2)));
+        cancelButton.addActionListener(e -> task.cancel());
+        line.add(cancelButton);
+        taskPanel.add(line);
+        pack();
+
+        task.onProgress(progress -> label.setText(task.getName() + ": " + progress));
+        task.onComplete((r, ex) -> {
+            taskPanel.remove(line);
+            pack();
+        });
     }
 }
 
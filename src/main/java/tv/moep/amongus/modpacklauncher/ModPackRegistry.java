@@ -0,0 +1,436 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import tv.moep.amongus.modpacklauncher.remote.ModPackSource;
+import tv.moep.amongus.modpacklauncher.remote.SourceType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+
+/**
+ * The mod packs that can be installed. They are defined in the bundled modpacks.properties, the
+ * remote registry set by the registry-url property and the local custom-modpacks.properties (can be
+ * changed with the modpacks-file property), later ones override earlier ones with the same name.
+ * Names are compared ignoring their case as they are also used as folder names.
+ * <p>
+ * The remote registry is stored locally with one line per mod pack and refreshed by only
+ * requesting the mod packs that changed since the last known revision. Definitions are only
+ * parsed into configs once they are needed.
+ */
+public class ModPackRegistry {
+    private static final String BUNDLED_FILE = "modpacks.properties";
+
+    private final ModPackLauncher launcher;
+    private final Path file;
+    // Lines of the locally stored remote registry by the mod pack name, null until loaded
+    private Map<String, String> remote = null;
+    private long revision = -1;
+    private Properties bundled = null;
+    private Properties local = null;
+    // Parsed configs by lower case name, a null value means that there is no definition with that name
+    private final Map<String, ModPackConfig> parsed = new HashMap<>();
+    private List<ModPackConfig> all = null;
+
+    public ModPackRegistry(ModPackLauncher launcher, Path file) {
+        this.launcher = launcher;
+        this.file = file;
+    }
+
+    /**
+     * Get a mod pack config, only parses the definition of that mod pack
+     * @param name The name of the mod pack
+     * @return The config or <code>null</code> if there is no mod pack with that name
+     */
+    public synchronized ModPackConfig get(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        if (!parsed.containsKey(key)) {
+            ModPackConfig config = null;
+            String localName = findName(getDefinedNames(getLocal()), name);
+            String remoteName = findName(getRemote().keySet(), name);
+            String bundledName = findName(getDefinedNames(getBundled()), name);
+            if (localName != null) {
+                config = parse(localName, getLocal());
+            } else if (remoteName != null) {
+                config = parseLine(getRemote().get(remoteName));
+            } else if (bundledName != null) {
+                config = parse(bundledName, getBundled());
+            }
+            parsed.put(key, config);
+        }
+        return parsed.get(key);
+    }
+
+    /**
+     * Get all mod pack configs, parses all definitions the first time it is called after a change
+     * @return The configs sorted by their name
+     */
+    public synchronized List<ModPackConfig> getAll() {
+        if (all == null) {
+            Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            names.addAll(getDefinedNames(getBundled()));
+            names.addAll(getRemote().keySet());
+            names.addAll(getDefinedNames(getLocal()));
+            all = new ArrayList<>();
+            for (String name : names) {
+                ModPackConfig config = get(name);
+                if (config != null) {
+                    all.add(config);
+                }
+            }
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Fetch the changes of the remote registry since the last known revision and store them locally.
+     * The whole registry is only requested if there is no local copy yet.
+     * @return Whether or not any mod pack changed
+     */
+    public boolean refresh() {
+        String registryUrl = launcher.getProperties().getProperty("registry-url");
+        if (registryUrl == null || registryUrl.isEmpty()) {
+            return false;
+        }
+        long knownRevision;
+        synchronized (this) {
+            getRemote();
+            knownRevision = revision;
+        }
+        URL url;
+        try {
+            url = new URL(knownRevision > -1 ? registryUrl + (registryUrl.contains("?") ? "&" : "?") + "since=" + knownRevision : registryUrl);
+        } catch (MalformedURLException e) {
+            launcher.log(Level.SEVERE, "Invalid registry url " + registryUrl + "! " + e.getMessage());
+            return false;
+        }
+        byte[] response = launcher.queryBytes(url);
+        if (response == null) {
+            return false;
+        }
+        try {
+            return apply(response, knownRevision);
+        } catch (IOException | IllegalStateException e) {
+            launcher.log(Level.SEVERE, "Invalid response from registry " + url, e);
+            return false;
+        }
+    }
+
+    private synchronized boolean apply(byte[] response, long knownRevision) throws IOException {
+        long newRevision = -1;
+        boolean delta = false;
+        Map<String, String> changed = new LinkedHashMap<>();
+        List<String> removed = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "revision":
+                        newRevision = reader.nextLong();
+                        break;
+                    case "delta":
+                        delta = reader.nextBoolean();
+                        break;
+                    case "packs":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Map<String, String> definition = readDefinition(reader);
+                            String name = definition.get("name");
+                            if (name != null && definition.containsKey("source")) {
+                                changed.put(name, toLine(definition));
+                            }
+                        }
+                        reader.endArray();
+                        break;
+                    case "removed":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            removed.add(reader.nextString());
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        if (newRevision > -1 && newRevision == knownRevision) {
+            return false;
+        }
+        if (revision != knownRevision) {
+            // Another refresh already applied a newer response
+            return false;
+        }
+        Map<String, String> updated = delta ? new LinkedHashMap<>(remote) : new LinkedHashMap<>();
+        for (String name : removed) {
+            updated.remove(name);
+        }
+        updated.putAll(changed);
+        boolean modified = !updated.equals(remote);
+        remote = updated;
+        revision = newRevision;
+        save();
+        if (modified) {
+            parsed.clear();
+            all = null;
+            launcher.log(Level.INFO, "Updated mod pack registry to revision " + revision + ": " + changed.size() + " changed, " + removed.size() + " removed" + (delta ? "" : " (full)"));
+        }
+        return modified;
+    }
+
+    private static Map<String, String> readDefinition(JsonReader reader) throws IOException {
+        Map<String, String> definition = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                // Placeholders
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String placeholder = reader.nextName();
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.skipValue();
+                    } else {
+                        definition.put(placeholder, reader.nextString());
+                    }
+                }
+                reader.endObject();
+            } else if (reader.peek() == JsonToken.STRING || reader.peek() == JsonToken.NUMBER) {
+                definition.put(key, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return definition;
+    }
+
+    private Map<String, String> getRemote() {
+        if (remote == null) {
+            remote = new LinkedHashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#revision ")) {
+                        revision = Long.parseLong(line.substring("#revision ".length()));
+                    } else if (!line.isEmpty() && !line.startsWith("#")) {
+                        int end = line.indexOf('\t');
+                        if (end > 0) {
+                            remote.put(unescape(line.substring(0, end)), line);
+                        }
+                    }
+                }
+            } catch (NoSuchFileException ignored) {
+            } catch (IOException | NumberFormatException e) {
+                launcher.log(Level.SEVERE, "Unable to load mod pack registry " + file, e);
+                remote.clear();
+                revision = -1;
+            }
+        }
+        return remote;
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("#revision " + revision);
+                writer.newLine();
+                for (String line : remote.values()) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Unable to save mod pack registry " + file, e);
+        }
+    }
+
+    /**
+     * Convert a definition to a stored line: the name, the source and the placeholders as key=value, separated by tabs
+     */
+    private static String toLine(Map<String, String> definition) {
+        StringBuilder line = new StringBuilder(escape(definition.get("name"))).append('\t').append(escape(definition.get("source")));
+        for (Map.Entry<String, String> e : definition.entrySet()) {
+            if (!e.getKey().equals("name") && !e.getKey().equals("source")) {
+                line.append('\t').append(escape(e.getKey())).append('=').append(escape(e.getValue()));
+            }
+        }
+        return line.toString();
+    }
+
+    private ModPackConfig parseLine(String line) {
+        String[] parts = line.split("\t");
+        if (parts.length < 2) {
+            return null;
+        }
+        Map<String, String> placeholders = new LinkedHashMap<>();
+        for (int i = 2; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            if (equals > 0) {
+                placeholders.put(unescape(parts[i].substring(0, equals)), unescape(parts[i].substring(equals + 1)));
+            }
+        }
+        return create(unescape(parts[0]), unescape(parts[1]), placeholders);
+    }
+
+    /**
+     * Find a name ignoring its case, an exact match is preferred
+     * @param names The names to search
+     * @param name The name to find
+     * @return The name as it is in the names or <code>null</code> if it isn't included
+     */
+    private static String findName(Collection<String> names, String name) {
+        if (names.contains(name)) {
+            return name;
+        }
+        for (String n : names) {
+            if (n.equalsIgnoreCase(name)) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> getDefinedNames(Properties properties) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(".source")) {
+                names.add(key.substring(0, key.length() - ".source".length()));
+            }
+        }
+        return names;
+    }
+
+    private ModPackConfig parse(String name, Properties properties) {
+        Map<String, String> placeholders = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(name + ".") && key.indexOf('.', name.length() + 1) < 0 && !key.equals(name + ".source")) {
+                placeholders.put(key.substring(name.length() + 1), properties.getProperty(key));
+            }
+        }
+        return create(name, properties.getProperty(name + ".source"), placeholders);
+    }
+
+    private ModPackConfig create(String name, String sourceName, Map<String, String> placeholders) {
+        SourceType type;
+        try {
+            type = SourceType.valueOf(sourceName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            launcher.log(Level.WARNING, "Unknown source " + sourceName + " for mod pack " + name);
+            return null;
+        }
+        ModPackSource source = launcher.getSource(type);
+        if (source == null) {
+            launcher.log(Level.WARNING, "Source " + type + " of mod pack " + name + " can't be used in the registry");
+            return null;
+        }
+        for (String placeholder : source.getRequiredPlaceholders()) {
+            if (!placeholders.containsKey(placeholder)) {
+                launcher.log(Level.WARNING, "Mod pack " + name + " is missing the placeholder " + placeholder + " required by source " + type);
+                return null;
+            }
+        }
+        return new ModPackConfig(name, source, placeholders);
+    }
+
+    private Properties getBundled() {
+        if (bundled == null) {
+            bundled = new Properties();
+            try (InputStream in = ModPackRegistry.class.getClassLoader().getResourceAsStream(BUNDLED_FILE)) {
+                if (in != null) {
+                    bundled.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                launcher.log(Level.SEVERE, "Unable to load bundled " + BUNDLED_FILE, e);
+            }
+        }
+        return bundled;
+    }
+
+    private Properties getLocal() {
+        if (local == null) {
+            local = new Properties();
+            Path localFile = Paths.get(launcher.getProperties().getProperty("modpacks-file", "custom-modpacks.properties"));
+            try (InputStream in = Files.newInputStream(localFile)) {
+                local.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (NoSuchFileException ignored) {
+            } catch (IOException e) {
+                launcher.log(Level.SEVERE, "Unable to load mod packs from " + localFile, e);
+            }
+        }
+        return local;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
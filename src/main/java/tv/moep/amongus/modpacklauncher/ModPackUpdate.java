@@ -0,0 +1,83 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.nio.file.Path;
+
+/**
+ * A mod pack that has a newer version available and the outcome of updating it
+ */
+public class ModPackUpdate {
+    private final ModPack modPack;
+    private final ModPackConfig config;
+    private final String latestVersion;
+    private final Path baseDirectory;
+    private volatile boolean done = false;
+    private volatile Throwable error = null;
+
+    public ModPackUpdate(ModPack modPack, ModPackConfig config, String latestVersion, Path baseDirectory) {
+        this.modPack = modPack;
+        this.config = config;
+        this.latestVersion = latestVersion;
+        this.baseDirectory = baseDirectory;
+    }
+
+    public ModPack getModPack() {
+        return modPack;
+    }
+
+    public ModPackConfig getConfig() {
+        return config;
+    }
+
+    public String getLatestVersion() {
+        return latestVersion;
+    }
+
+    /**
+     * @return The original game folder to install the update from or <code>null</code> if none was found
+     */
+    public Path getBaseDirectory() {
+        return baseDirectory;
+    }
+
+    /**
+     * @return Whether or not the update was installed successfully
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return The error that the update failed with or <code>null</code> if it didn't fail (yet)
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    void complete(Throwable error) {
+        this.error = error;
+        this.done = error == null;
+    }
+
+    @Override
+    public String toString() {
+        return modPack.getName() + " " + modPack.getVersion() + " -> " + latestVersion;
+    }
+}
@@ -0,0 +1,99 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watches the Steam folder for mod pack folders that get added, removed or changed outside of the
+ * launcher. Bursts of events are coalesced until the folder was quiet for the debounce time and
+ * only the affected folders are refreshed.
+ */
+public class ModPackWatcher implements Closeable {
+    private final ModPackLauncher launcher;
+    private final Path folder;
+    private final long debounce;
+    private final WatchService watchService;
+
+    /**
+     * Start watching a folder
+     * @param launcher The launcher to refresh the mod packs of
+     * @param folder The Steam folder
+     * @param debounce The time in milliseconds without events to wait for before refreshing
+     * @throws IOException If the folder can't be watched
+     */
+    public ModPackWatcher(ModPackLauncher launcher, Path folder, long debounce) throws IOException {
+        this.launcher = launcher;
+        this.folder = folder;
+        this.debounce = debounce;
+        this.watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::run, "Mod pack watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (event.context() instanceof Path
+                                && ((Path) event.context()).getFileName().toString().startsWith(ModPackIndex.FOLDER_PREFIX)) {
+                            changed.add(folder.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        launcher.log(Level.WARNING, "Stopped watching " + folder + " as it is no longer accessible");
+                        return;
+                    }
+                    key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+                }
+                if (overflow) {
+                    launcher.refreshModPacks(null);
+                } else if (!changed.isEmpty()) {
+                    launcher.refreshModPacks(changed);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // Closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,388 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A version read from a release tag or folder name like "v2.1.3", "2.1.3-beta.2+build.5",
+ * "TheOtherRoles-v2.1.3-2021.3.5", "nightly-345" or a date style game version like "2021.3.5".
+ * Tags are parsed once and cached, comparing parsed versions doesn't allocate.
+ * <p>
+ * The order follows semantic versioning: the numeric components are compared one by one with missing
+ * ones counting as 0, a pre-release is older than its release and build metadata is ignored. A date
+ * style game version after the version, like in "v2.1.3-2021.3.5", is compared last. Tags without
+ * any number are older than all others.
+ */
+public final class Version implements Comparable<Version> {
+    private static final long[] NO_NUMBERS = new long[0];
+    private static final String[] NO_IDENTIFIERS = new String[0];
+    private static final Cache<String, Version> CACHE = Caffeine.newBuilder().maximumSize(4096).build();
+
+    private final String tag;
+    private final String core;
+    private final long[] numbers;
+    private final String[] preRelease;
+    /** The numeric value of each pre-release identifier or -1 if it isn't numeric */
+    private final long[] preReleaseNumbers;
+    private final long[] gameVersion;
+    private final String build;
+    private final int hash;
+
+    private Version(String tag, String core, long[] numbers, String[] preRelease, long[] gameVersion, String build) {
+        this.tag = tag;
+        this.core = core;
+        this.numbers = numbers;
+        this.preRelease = preRelease;
+        this.preReleaseNumbers = new long[preRelease.length];
+        for (int i = 0; i < preRelease.length; i++) {
+            preReleaseNumbers[i] = parseNumber(preRelease[i], 0, preRelease[i].length());
+        }
+        this.gameVersion = gameVersion;
+        this.build = build;
+        if (numbers.length > 0) {
+            int hash = hashNumbers(numbers);
+            for (int i = 0; i < preRelease.length; i++) {
+                hash = 31 * hash + (preReleaseNumbers[i] >= 0 ? Long.hashCode(preReleaseNumbers[i]) : preRelease[i].hashCode());
+            }
+            this.hash = 31 * hash + (gameVersion != null ? hashNumbers(gameVersion) : 0);
+        } else {
+            this.hash = tag.hashCode();
+        }
+    }
+
+    /**
+     * Hash numbers the same way regardless of trailing zeros as those don't change the order
+     */
+    private static int hashNumbers(long[] numbers) {
+        int length = numbers.length;
+        while (length > 0 && numbers[length - 1] == 0) {
+            length--;
+        }
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Long.hashCode(numbers[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Get the version of a tag
+     * @param tag The tag
+     * @return The parsed version or <code>null</code> if the tag is <code>null</code>
+     */
+    public static Version of(String tag) {
+        return tag != null ? CACHE.get(tag, Version::parse) : null;
+    }
+
+    /**
+     * Check whether a version is newer than another one
+     * @param version The current version
+     * @param toCompare The version to compare with
+     * @return <code>true</code> if toCompare is newer, <code>false</code> if it isn't or either has no numbers to compare
+     */
+    public static boolean isNewer(String version, String toCompare) {
+        Version current = of(version);
+        Version compared = of(toCompare);
+        return current != null && compared != null && current.hasNumbers() && compared.hasNumbers() && compared.compareTo(current) > 0;
+    }
+
+    /**
+     * Sort a list by versions from the oldest to the newest, e.g. the original game folders. Every tag
+     * is looked up only once instead of on every comparison.
+     * @param list The list to sort
+     * @param tag The function to get the tag of an element, elements without a tag are sorted first
+     * @param <T> The type of the elements
+     */
+    public static <T> void sort(List<T> list, Function<? super T, String> tag) {
+        List<Tagged<T>> tagged = new ArrayList<>(list.size());
+        for (T element : list) {
+            tagged.add(new Tagged<>(element, of(tag.apply(element))));
+        }
+        tagged.sort(Comparator.comparing(t -> t.version, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (int i = 0; i < tagged.size(); i++) {
+            list.set(i, tagged.get(i).element);
+        }
+    }
+
+    /**
+     * Get a comparator which orders elements by the versions of their tags from the oldest to the newest
+     * @param tag The function to get the tag of an element, elements without a tag are sorted first
+     * @param <T> The type of the elements
+     * @return The comparator
+     */
+    public static <T> Comparator<T> comparing(Function<? super T, String> tag) {
+        return Comparator.comparing(element -> of(tag.apply(element)), Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    static Version parse(String tag) {
+        int start = findStart(tag);
+        if (start < 0) {
+            return new Version(tag, tag, NO_NUMBERS, NO_IDENTIFIERS, null, null);
+        }
+        List<Long> numbers = new ArrayList<>();
+        int i = readNumbers(tag, start, numbers);
+        String core = tag.substring(start, i);
+        List<Long> gameVersion = null;
+        String[] preRelease = NO_IDENTIFIERS;
+        String build = null;
+        while (i < tag.length()) {
+            char c = tag.charAt(i);
+            if (c == '-' && gameVersion == null && isDateVersion(tag, i + 1)) {
+                gameVersion = new ArrayList<>();
+                i = readNumbers(tag, i + 1, gameVersion);
+            } else if (c == '-' && preRelease.length == 0 && i + 1 < tag.length() && isIdentifierChar(tag.charAt(i + 1))) {
+                int end = skipIdentifiers(tag, i + 1);
+                preRelease = tag.substring(i + 1, end).split("\\.");
+                i = end;
+            } else if (c == '+' && i + 1 < tag.length() && isIdentifierChar(tag.charAt(i + 1))) {
+                int end = skipIdentifiers(tag, i + 1);
+                build = tag.substring(i + 1, end);
+                i = end;
+            } else {
+                // Anything else like a suffix of letters or a file extension isn't part of the version
+                break;
+            }
+        }
+        return new Version(tag, core, toArray(numbers), preRelease, gameVersion != null ? toArray(gameVersion) : null, build);
+    }
+
+    /**
+     * Find the start of the version, that is the first number followed by a dot and another number
+     * or the first number if there is no such one
+     */
+    private static int findStart(String tag) {
+        int first = -1;
+        for (int i = 0; i < tag.length(); i++) {
+            if (isDigit(tag, i) && !isDigit(tag, i - 1)) {
+                if (first < 0) {
+                    first = i;
+                }
+                int end = skipDigits(tag, i);
+                if (end < tag.length() && tag.charAt(end) == '.' && isDigit(tag, end + 1)) {
+                    return i;
+                }
+                i = end;
+            }
+        }
+        return first;
+    }
+
+    private static int readNumbers(String tag, int start, List<Long> numbers) {
+        int i = start;
+        while (true) {
+            int end = skipDigits(tag, i);
+            numbers.add(parseNumber(tag, i, end));
+            if (end < tag.length() && tag.charAt(end) == '.' && isDigit(tag, end + 1)) {
+                i = end + 1;
+            } else {
+                return end;
+            }
+        }
+    }
+
+    /**
+     * Parse a number without creating a substring
+     * @return The number, -1 if the range contains other characters or Long.MAX_VALUE if it is too big
+     */
+    private static long parseNumber(String string, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (number > (Long.MAX_VALUE - 9) / 10) {
+                number = Long.MAX_VALUE;
+            } else {
+                number = number * 10 + (c - '0');
+            }
+        }
+        return number;
+    }
+
+    private static boolean isDateVersion(String tag, int start) {
+        return skipDigits(tag, start) == start + 4 && start + 5 < tag.length() && tag.charAt(start + 4) == '.' && isDigit(tag, start + 5);
+    }
+
+    private static int skipDigits(String tag, int start) {
+        int i = start;
+        while (isDigit(tag, i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipIdentifiers(String tag, int start) {
+        int i = start;
+        while (i < tag.length() && (isIdentifierChar(tag.charAt(i)) || (tag.charAt(i) == '.' && i + 1 < tag.length() && isIdentifierChar(tag.charAt(i + 1))))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(String tag, int index) {
+        if (index < 0 || index >= tag.length()) {
+            return false;
+        }
+        char c = tag.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public int compareTo(Version o) {
+        if (numbers.length == 0 || o.numbers.length == 0) {
+            if (numbers.length == 0 && o.numbers.length == 0) {
+                return tag.compareTo(o.tag);
+            }
+            return numbers.length == 0 ? -1 : 1;
+        }
+        int result = compareNumbers(numbers, o.numbers);
+        if (result != 0) {
+            return result;
+        }
+        result = comparePreRelease(o);
+        if (result != 0) {
+            return result;
+        }
+        if (gameVersion == null || o.gameVersion == null) {
+            return gameVersion == null ? (o.gameVersion == null ? 0 : -1) : 1;
+        }
+        return compareNumbers(gameVersion, o.gameVersion);
+    }
+
+    private static int compareNumbers(long[] numbers, long[] other) {
+        for (int i = 0; i < numbers.length || i < other.length; i++) {
+            int result = Long.compare(i < numbers.length ? numbers[i] : 0, i < other.length ? other[i] : 0);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private int comparePreRelease(Version o) {
+        if (preRelease.length == 0 || o.preRelease.length == 0) {
+            // A release is newer than its pre-releases
+            return Boolean.compare(preRelease.length == 0, o.preRelease.length == 0);
+        }
+        for (int i = 0; i < preRelease.length && i < o.preRelease.length; i++) {
+            long number = preReleaseNumbers[i];
+            long otherNumber = o.preReleaseNumbers[i];
+            int result;
+            if (number >= 0 && otherNumber >= 0) {
+                result = Long.compare(number, otherNumber);
+            } else if (number >= 0 || otherNumber >= 0) {
+                // Numeric identifiers are older than alphanumeric ones
+                result = number >= 0 ? -1 : 1;
+            } else {
+                result = preRelease[i].compareTo(o.preRelease[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(preRelease.length, o.preRelease.length);
+    }
+
+    /**
+     * Get the tag that this version was read from
+     * @return The tag
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Get the numeric part of the version like "2.1.3" for "v2.1.3-beta.1"
+     * @return The numeric part or the whole tag if it doesn't contain any number
+     */
+    public String getCore() {
+        return core;
+    }
+
+    /**
+     * Whether or not this version contains any number and can be compared in a meaningful way
+     * @return Whether the tag contained a number
+     */
+    public boolean hasNumbers() {
+        return numbers.length > 0;
+    }
+
+    public boolean isPreRelease() {
+        return preRelease.length > 0;
+    }
+
+    /**
+     * Get the build metadata which is not used when comparing versions
+     * @return The build metadata or <code>null</code> if the tag had none
+     */
+    public String getBuild() {
+        return build;
+    }
+
+    /**
+     * Versions are equal if they have the same order, e.g. "v1.2" and "1.2.0+build.5" are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Version && hash == o.hashCode() && compareTo((Version) o) == 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return tag;
+    }
+
+    private static class Tagged<T> {
+        private final T element;
+        private final Version version;
+
+        private Tagged(T element, Version version) {
+            this.element = element;
+            this.version = version;
+        }
+    }
+}
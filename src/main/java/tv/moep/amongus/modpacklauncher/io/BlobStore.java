@@ -0,0 +1,515 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed store for the files of mod packs. Every distinct file is stored once as a blob
+ * named after its SHA-256 hash and mod pack folders hard link to the blobs, so files that are the
+ * same in multiple mod packs and original games only take up space once. The blobs referenced by a
+ * folder are recorded in its {@link Manifest}, blobs that no manifest references anymore are removed
+ * by {@link #collectGarbage(Collection)}.
+ * <p>
+ * Files are never written to in place by the launcher (they get deleted and recreated). Files
+ * that the game or BepInEx are known to write to are excluded from the store and kept as normal
+ * copies, blobs are checked against their hash before they get linked into another folder so that
+ * a file that was still written to in place doesn't spread to other folders.
+ */
+public class BlobStore {
+    private final ModPackLauncher launcher;
+    private final Path folder;
+    private final FileCopier copier;
+    private final ForkJoinPool pool;
+    // Storing takes the read lock as it may be done concurrently, collecting garbage needs exclusive access
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean linkingSupported = true;
+    // The modification time of blobs at which they last matched their hash, writing to a blob changes it
+    private final Map<String, Long> verified = new ConcurrentHashMap<>();
+
+    public BlobStore(ModPackLauncher launcher, Path folder, FileCopier copier) {
+        this.launcher = launcher;
+        this.folder = folder;
+        this.copier = copier;
+        this.pool = new ForkJoinPool(copier.getParallelism());
+    }
+
+    private Path getBlob(String sha256) {
+        return folder.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Add the files of a folder to the store and replace them with links to the blobs. Files are
+     * only hashed if they changed since the known manifest was created.
+     * @param target The folder to store
+     * @param known The previous manifest of the folder or <code>null</code> if there is none
+     * @param excluded Filter for the paths relative to the folder that should be kept as copies
+     * @return The new manifest which is also saved in the folder
+     * @throws IOException If a file could not be read or linked
+     */
+    public Manifest store(Path target, Manifest known, Predicate<Path> excluded) throws IOException {
+        FileCopier.Scan scan = copier.scan(target);
+        Manifest manifest = new Manifest();
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (FileCopier.Scan.Entry file : scan.getFiles()) {
+            String path = Manifest.toManifestPath(file.getPath());
+            if (path.equals(Manifest.FILE_NAME) || path.equals(Manifest.FILE_NAME + ".tmp")) {
+                continue;
+            }
+            Manifest.Entry knownEntry = known != null ? known.get(path) : null;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        Path source = target.resolve(file.getPath());
+                        long lastModified = file.getLastModified().toMillis();
+                        String sha256;
+                        if (knownEntry != null && knownEntry.getSize() == file.getSize() && knownEntry.getLastModified() == lastModified) {
+                            sha256 = knownEntry.getSha256();
+                        } else {
+                            sha256 = Hashes.sha256(source);
+                        }
+                        boolean stored = !excluded.test(file.getPath()) && link(source, sha256, file.getSize());
+                        if (stored) {
+                            // The blob might be older than the file
+                            lastModified = Files.getLastModifiedTime(source).toMillis();
+                        }
+                        manifest.put(new Manifest.Entry(path, file.getSize(), lastModified, sha256, stored));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to store " + file.getPath() + " of " + target, e);
+                    }
+                }
+            });
+        }
+        lock.readLock().lock();
+        try {
+            invoke(tasks);
+            manifest.save(target);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return manifest;
+    }
+
+    /**
+     * Link a file into the store or replace it with a link to an existing blob with the same content.
+     * An existing blob that doesn't match its hash anymore is replaced by the file instead.
+     * @param file The file
+     * @param sha256 The hash of the file
+     * @param size The size of the file
+     * @return Whether or not the file is now linked to a blob
+     * @throws IOException If the file could not be replaced
+     */
+    private boolean link(Path file, String sha256, long size) throws IOException {
+        if (!linkingSupported) {
+            return false;
+        }
+        Path blob = getBlob(sha256);
+        try {
+            Files.createDirectories(blob.getParent());
+            try {
+                Files.createLink(blob, file);
+                return true;
+            } catch (FileAlreadyExistsException e) {
+                // Blob already exists, replace the file with it
+            }
+            if (Files.isSameFile(blob, file)) {
+                return true;
+            }
+            if (!isIntact(blob, sha256, size)) {
+                // Don't spread a corrupted blob, the freshly hashed file becomes the blob instead
+                launcher.log(Level.WARNING, "Blob " + blob + " is corrupted, replacing it with " + file + "!");
+                verified.remove(sha256);
+                Path temp = blob.resolveSibling(blob.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+                Files.deleteIfExists(temp);
+                Files.createLink(temp, file);
+                try {
+                    Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".blob.tmp");
+            Files.deleteIfExists(temp);
+            Files.createLink(temp, blob);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (e instanceof NoSuchFileException) {
+                throw (NoSuchFileException) e;
+            }
+            // A file system without hard links, no need to try it for every file
+            linkingSupported = false;
+            launcher.log(Level.WARNING, "Unable to link " + file + " into the store at " + folder + ", not deduplicating files! " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Create a folder from the manifest of another one. Stored files are linked from the store,
+     * all other files are copied from the source folder.
+     * @param source The folder the manifest belongs to
+     * @param manifest The manifest of the source folder
+     * @param target The folder to create
+     * @return The result of copying the files that weren't linked
+     * @throws IOException If a file could not be linked or copied
+     */
+    public FileCopier.Result realize(Path source, Manifest manifest, Path target) throws IOException {
+        return realize(copier.scan(source), manifest, target);
+    }
+
+    /**
+     * Create a folder from the manifest of another one that was already scanned. Stored files are
+     * linked from the store, all other files are copied from the scanned folder.
+     * @param source The scan of the folder the manifest belongs to, can be reused for multiple targets
+     * @param manifest The manifest of the source folder
+     * @param target The folder to create
+     * @return The result of copying the files that weren't linked
+     * @throws IOException If a file could not be linked or copied
+     */
+    public FileCopier.Result realize(FileCopier.Scan source, Manifest manifest, Path target) throws IOException {
+        lock.readLock().lock();
+        try {
+            Set<String> linked = verifyBlobs(source.getRoot(), manifest);
+            Manifest targetManifest = new Manifest();
+            FileCopier.Scan scan = source.filter(file -> {
+                String path = Manifest.toManifestPath(file.getPath());
+                if (linked.contains(path)) {
+                    targetManifest.put(manifest.get(path));
+                    return false;
+                }
+                return !file.getPath().toString().startsWith(Manifest.FILE_NAME);
+            });
+            FileCopier.Result result = copier.copy(scan, target, null);
+            List<RecursiveAction> tasks = new ArrayList<>();
+            for (String path : linked) {
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        Path file = target.resolve(path);
+                        try {
+                            Files.deleteIfExists(file);
+                            Files.createLink(file, getBlob(manifest.get(path).getSha256()));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Unable to link " + file + " from the store", e);
+                        }
+                    }
+                });
+            }
+            invoke(tasks);
+            // Reference the blobs right away so that they can't be collected before the folder gets stored
+            targetManifest.save(target);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check the blobs of the stored files of a folder against their hashes. Corrupted blobs are
+     * removed from the store, the files of such blobs get copied from the folder instead.
+     * @param folder The folder the manifest belongs to
+     * @param manifest The manifest
+     * @return The paths of the files whose blobs are intact and can be linked
+     * @throws IOException If a blob could not be read or a file of the folder is the corrupted blob itself
+     */
+    private Set<String> verifyBlobs(Path folder, Manifest manifest) throws IOException {
+        Set<String> intact = ConcurrentHashMap.newKeySet();
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (Manifest.Entry entry : manifest.getEntries()) {
+            if (!entry.isStored()) {
+                continue;
+            }
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    Path blob = getBlob(entry.getSha256());
+                    try {
+                        if (!Files.exists(blob)) {
+                            return;
+                        }
+                        if (isIntact(blob, entry.getSha256(), entry.getSize())) {
+                            intact.add(entry.getPath());
+                            return;
+                        }
+                        Path file = folder.resolve(entry.getPath());
+                        boolean sameFile = Files.exists(file) && Files.isSameFile(file, blob);
+                        launcher.log(Level.WARNING, "Blob " + blob + " of " + file + " is corrupted, removing it from the store!");
+                        Files.delete(blob);
+                        verified.remove(entry.getSha256());
+                        if (sameFile) {
+                            throw new IOException(file + " was changed in place, it needs to be repaired before it can be used again!");
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to verify blob " + blob, e);
+                    }
+                }
+            });
+        }
+        invoke(tasks);
+        return intact;
+    }
+
+    /**
+     * Check whether a blob still has the content it is stored under. Blobs are only hashed again
+     * when their modification time changed since they were last found to be intact.
+     */
+    private boolean isIntact(Path blob, String sha256, long size) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(blob, BasicFileAttributes.class);
+        if (attributes.size() != size) {
+            return false;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Long verifiedAt = verified.get(sha256);
+        if (verifiedAt != null && verifiedAt == lastModified) {
+            return true;
+        }
+        if (Hashes.sha256(blob).equals(sha256)) {
+            verified.put(sha256, lastModified);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restore a file by linking it to its blob again. Blobs that don't match their hash anymore
+     * (e.g. because a linked file was written to in place) are removed from the store.
+     * @param entry The manifest entry of the file
+     * @param target The file to restore
+     * @return Whether or not the file was linked to an intact blob
+     * @throws IOException If the blob could not be read or the file could not be linked
+     */
+    public boolean restore(Manifest.Entry entry, Path target) throws IOException {
+        lock.readLock().lock();
+        try {
+            Path blob = getBlob(entry.getSha256());
+            if (!Files.exists(blob) || Files.size(blob) != entry.getSize()) {
+                return false;
+            }
+            if (!Hashes.sha256(blob).equals(entry.getSha256())) {
+                launcher.log(Level.WARNING, "Blob " + blob + " is corrupted, removing it from the store!");
+                Files.delete(blob);
+                return false;
+            }
+            Files.deleteIfExists(target);
+            Files.createLink(target, blob);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all blobs that aren't referenced by the manifest of any folder anymore
+     * @param folders All folders that use the store
+     * @return A report of the store after collecting the garbage
+     * @throws IOException If the store could not be walked
+     */
+    public Report collectGarbage(Collection<Path> folders) throws IOException {
+        lock.writeLock().lock();
+        try {
+            return walk(folders, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get a report of the size of the folders compared to what they take up on the disk
+     * @param folders All folders that use the store
+     * @return The report
+     * @throws IOException If the store could not be walked
+     */
+    public Report getReport(Collection<Path> folders) throws IOException {
+        lock.readLock().lock();
+        try {
+            return walk(folders, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Report walk(Collection<Path> folders, boolean sweep) throws IOException {
+        Report report = new Report();
+        Set<String> referenced = new HashSet<>();
+        for (Path folder : folders) {
+            Manifest manifest = Manifest.load(folder);
+            if (manifest == null) {
+                continue;
+            }
+            report.folders++;
+            for (Manifest.Entry entry : manifest.getEntries()) {
+                report.logicalBytes += entry.getSize();
+                if (entry.isStored()) {
+                    referenced.add(entry.getSha256());
+                } else {
+                    report.physicalBytes += entry.getSize();
+                }
+            }
+        }
+        if (!Files.isDirectory(folder)) {
+            return report;
+        }
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (referenced.contains(file.getFileName().toString())) {
+                    report.blobs++;
+                    report.physicalBytes += attrs.size();
+                } else if (sweep) {
+                    Files.delete(file);
+                    report.removedBlobs++;
+                    report.removedBytes += attrs.size();
+                } else {
+                    report.unreferencedBytes += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (sweep && !dir.equals(folder)) {
+                    try (Stream<Path> list = Files.list(dir)) {
+                        if (!list.findAny().isPresent()) {
+                            Files.delete(dir);
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return report;
+    }
+
+    private void invoke(List<RecursiveAction> tasks) throws IOException {
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public Path getFolder() {
+        return folder;
+    }
+
+    public static class Report {
+        private int folders = 0;
+        private int blobs = 0;
+        private long logicalBytes = 0;
+        private long physicalBytes = 0;
+        private long unreferencedBytes = 0;
+        private int removedBlobs = 0;
+        private long removedBytes = 0;
+
+        /**
+         * @return The amount of folders with a manifest
+         */
+        public int getFolders() {
+            return folders;
+        }
+
+        /**
+         * @return The amount of referenced blobs in the store
+         */
+        public int getBlobs() {
+            return blobs;
+        }
+
+        /**
+         * @return The sum of the sizes of all files in all folders
+         */
+        public long getLogicalBytes() {
+            return logicalBytes;
+        }
+
+        /**
+         * @return The bytes actually used on the disk by the blobs and the files that aren't stored
+         */
+        public long getPhysicalBytes() {
+            return physicalBytes;
+        }
+
+        /**
+         * @return The bytes used by blobs that aren't referenced anymore and weren't removed yet
+         */
+        public long getUnreferencedBytes() {
+            return unreferencedBytes;
+        }
+
+        /**
+         * @return The amount of blobs removed by collecting the garbage
+         */
+        public int getRemovedBlobs() {
+            return removedBlobs;
+        }
+
+        /**
+         * @return The bytes freed by collecting the garbage
+         */
+        public long getRemovedBytes() {
+            return removedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return folders + " folders, " + (logicalBytes / 1024 / 1024) + " MiB logical, "
+                    + (physicalBytes / 1024 / 1024) + " MiB physical in " + blobs + " blobs"
+                    + (unreferencedBytes > 0 ? ", " + (unreferencedBytes / 1024 / 1024) + " MiB unreferenced" : "")
+                    + (removedBlobs > 0 ? ", removed " + removedBlobs + " blobs (" + (removedBytes / 1024 / 1024) + " MiB)" : "");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded buffer between a thread reading from a source stream (e.g. the network) and a
+ * consumer reading from {@link #getInputStream()}. The reader blocks once the buffer is full.
+ */
+public class BoundedPipe {
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+    private final int chunkSize;
+    private volatile IOException error = null;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a new pipe
+     * @param chunkSize The size of the chunks read from the source
+     * @param capacity The maximum amount of chunks to buffer
+     */
+    public BoundedPipe(int chunkSize, int capacity) {
+        this.chunkSize = chunkSize;
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Start a daemon thread that reads the source stream into this pipe and closes it afterwards
+     * @param name The name of the thread
+     * @param source The stream to read
+     * @return The started thread
+     */
+    public Thread start(String name, InputStream source) {
+        Thread thread = new Thread(() -> feed(source), name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void feed(InputStream source) {
+        try (InputStream in = source) {
+            while (!closed) {
+                byte[] chunk = new byte[chunkSize];
+                int length = 0;
+                int r;
+                while (length < chunk.length && (r = in.read(chunk, length, chunk.length - length)) != -1) {
+                    length += r;
+                }
+                if (length > 0) {
+                    if (length < chunk.length) {
+                        byte[] trimmed = new byte[length];
+                        System.arraycopy(chunk, 0, trimmed, 0, length);
+                        chunk = trimmed;
+                    }
+                    put(chunk);
+                }
+                if (length < chunkSize) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("Interrupted while reading " + e.getMessage());
+            Thread.currentThread().interrupt();
+        }
+        try {
+            put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(byte[] chunk) throws InterruptedException {
+        while (!closed && !chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            // Wait for the consumer to take chunks or to close the pipe
+        }
+    }
+
+    /**
+     * Get the stream to consume the buffered data from. Closing it stops the reading thread.
+     * @return The input stream
+     */
+    public InputStream getInputStream() {
+        return new InputStream() {
+            private byte[] current = null;
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (current == END) {
+                    return -1;
+                }
+                if (current == null || position >= current.length) {
+                    try {
+                        current = chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for data");
+                    }
+                    position = 0;
+                    if (current == END) {
+                        if (error != null) {
+                            throw error;
+                        }
+                        return -1;
+                    }
+                }
+                int length = Math.min(len, current.length - position);
+                System.arraycopy(current, position, b, off, length);
+                position += length;
+                return length;
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+                chunks.clear();
+            }
+        };
+    }
+}
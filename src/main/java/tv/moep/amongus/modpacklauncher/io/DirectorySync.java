@@ -0,0 +1,169 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Brings a target folder in line with a source folder by only touching the entries that differ.
+ * Files are considered equal when their relative path, size and modification time match.
+ */
+public class DirectorySync {
+
+    private final ModPackLauncher launcher;
+    private final FileCopier copier;
+    private final FileStager stager;
+
+    public DirectorySync(ModPackLauncher launcher, FileCopier copier, FileStager stager) {
+        this.launcher = launcher;
+        this.copier = copier;
+        this.stager = stager;
+    }
+
+    /**
+     * Sync the target folder with the source folder
+     * @param source The folder to read from
+     * @param target The folder to update, will be created if it doesn't exist
+     * @return The result of the sync
+     * @throws IOException If an entry could not be staged or removed
+     */
+    public Result sync(Path source, Path target) throws IOException {
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        FileCopier.Scan scan = copier.scan(source);
+        Map<Path, FileCopier.Scan.Entry> sourceFiles = new HashMap<>();
+        for (FileCopier.Scan.Entry entry : scan.getFiles()) {
+            sourceFiles.put(entry.getPath(), entry);
+        }
+        Set<Path> sourceDirectories = new HashSet<>(scan.getDirectories());
+
+        Set<Path> unchanged = new HashSet<>();
+        if (Files.isDirectory(target)) {
+            Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Path relative = target.relativize(file);
+                    FileCopier.Scan.Entry sourceEntry = sourceFiles.get(relative);
+                    if (sourceEntry == null) {
+                        Files.delete(file);
+                        result.deleted++;
+                    } else if (sourceEntry.getSize() == attrs.size()
+                            // Copies don't keep the full precision on every file system
+                            && sourceEntry.getLastModified().toMillis() == attrs.lastModifiedTime().toMillis()
+                            && !isLinkThatShouldBeCopy(source.resolve(relative), file, relative)) {
+                        unchanged.add(relative);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    if (exc != null) {
+                        throw exc;
+                    }
+                    if (!sourceDirectories.contains(target.relativize(dir))) {
+                        Files.delete(dir);
+                        result.deleted++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } else {
+            Files.deleteIfExists(target);
+        }
+
+        result.unchanged = unchanged.size();
+        FileCopier.Result copyResult = copier.copy(scan.filter(e -> !unchanged.contains(e.getPath())), target, stager);
+        result.linked = copyResult.getLinked();
+        result.copied = copyResult.getCopied();
+
+        result.duration = System.currentTimeMillis() - start;
+        launcher.log(Level.INFO, "Synced " + source + " to " + target + ": " + result);
+        return result;
+    }
+
+    /**
+     * Check whether a file in the target is a hard link to the source file although it has to be a
+     * copy, e.g. because it was linked by an earlier sync that staged the folder differently
+     */
+    private boolean isLinkThatShouldBeCopy(Path sourceFile, Path targetFile, Path relative) throws IOException {
+        boolean copied = stager == null || stager.getMode() == FileStager.Mode.COPY || stager.isCopied(relative);
+        return copied && Files.isSameFile(sourceFile, targetFile);
+    }
+
+    public static class Result {
+        private int unchanged = 0;
+        private long linked = 0;
+        private long copied = 0;
+        private int deleted = 0;
+        private long duration = 0;
+
+        /**
+         * @return The amount of files which already were up to date
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return The amount of files which were hard linked
+         */
+        public long getLinked() {
+            return linked;
+        }
+
+        /**
+         * @return The amount of files which were copied
+         */
+        public long getCopied() {
+            return copied;
+        }
+
+        /**
+         * @return The amount of files and folders removed from the target
+         */
+        public int getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * @return The time the sync took in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return unchanged + " unchanged, " + linked + " linked, " + copied + " copied, " + deleted + " deleted in " + duration + "ms";
+        }
+    }
+}
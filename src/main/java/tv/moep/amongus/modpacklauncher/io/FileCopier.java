@@ -0,0 +1,423 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Copies folder trees in two phases: a scan which collects all folders and files and a parallel
+ * copy phase on a fork/join pool. Files larger than the chunk size are split into chunks which are
+ * transferred concurrently with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ */
+public class FileCopier {
+    public static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+
+    public FileCopier(int parallelism) {
+        this(parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    public FileCopier(int parallelism, long chunkSize) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Scan a folder for all its sub folders and files
+     * @param source The folder to scan
+     * @return The scan result which can be passed to {@link #copy(Scan, Path, FileStager)}
+     * @throws IOException If the folder could not be walked
+     */
+    public Scan scan(Path source) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        List<Scan.Entry> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                directories.add(source.relativize(dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(new Scan.Entry(source.relativize(file), attrs.size(), attrs.lastModifiedTime()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new Scan(source, directories, files);
+    }
+
+    /**
+     * Copy a folder into a target folder
+     * @param source The folder to copy
+     * @param target The folder to copy to
+     * @return The result of the copy
+     * @throws IOException If a file could not be copied
+     */
+    public Result copy(Path source, Path target) throws IOException {
+        return copy(scan(source), target, null);
+    }
+
+    /**
+     * Copy the scanned files into a target folder. Existing files will be replaced.
+     * @param scan The scanned files
+     * @param target The folder to copy to
+     * @param stager The stager to try linking files with first, <code>null</code> to always copy
+     * @return The result of the copy
+     * @throws IOException If a file could not be copied
+     */
+    public Result copy(Scan scan, Path target, FileStager stager) throws IOException {
+        return copy(scan, target, stager, null);
+    }
+
+    /**
+     * Copy the scanned files into a target folder and hash them while they are copied. This reads
+     * every file through a buffer instead of letting the OS copy it so it is slower than a normal
+     * copy but faster than hashing the copied files afterwards.
+     * @param scan The scanned files
+     * @param target The folder to copy to
+     * @param manifest The manifest to add the copied files with their hashes to
+     * @return The result of the copy
+     * @throws IOException If a file could not be copied
+     */
+    public Result copyHashing(Scan scan, Path target, Manifest manifest) throws IOException {
+        return copy(scan, target, null, manifest);
+    }
+
+    private Result copy(Scan scan, Path target, FileStager stager, Manifest manifest) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        for (Path directory : scan.getDirectories()) {
+            Files.createDirectories(target.resolve(directory));
+            result.directories++;
+        }
+
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (Scan.Entry entry : scan.getFiles()) {
+            tasks.add(new FileTask(scan.getRoot().resolve(entry.getPath()), target.resolve(entry.getPath()), entry, stager, manifest, result));
+        }
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        result.duration = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Delete a folder with all its contents. Files that can't be deleted are skipped so that as
+     * much as possible gets deleted.
+     * @param folder The folder to delete
+     * @param errorHandler Called with every file or folder that could not be deleted
+     */
+    public static void delete(Path folder, BiConsumer<Path, IOException> errorHandler) {
+        try {
+            try (Stream<Path> children = Files.list(folder)) {
+                children.forEach(p -> {
+                    if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                        delete(p, errorHandler);
+                    } else {
+                        try {
+                            Files.delete(p);
+                        } catch (IOException e) {
+                            errorHandler.accept(p, e);
+                        }
+                    }
+                });
+            }
+            Files.delete(folder);
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            errorHandler.accept(folder, e);
+        }
+    }
+
+    /**
+     * Get the amount of threads used for copying
+     * @return The parallelism
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private class FileTask extends RecursiveAction {
+        private final Path source;
+        private final Path target;
+        private final Scan.Entry entry;
+        private final FileStager stager;
+        private final Manifest manifest;
+        private final Result result;
+
+        private FileTask(Path source, Path target, Scan.Entry entry, FileStager stager, Manifest manifest, Result result) {
+            this.source = source;
+            this.target = target;
+            this.entry = entry;
+            this.stager = stager;
+            this.manifest = manifest;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (manifest != null) {
+                    copyHashing();
+                    result.copied.increment();
+                    result.bytes.add(entry.getSize());
+                } else if (stager != null && stager.link(source, target, entry.getPath())) {
+                    result.linked.increment();
+                } else if (entry.getSize() <= chunkSize) {
+                    // Delete first so that an existing hard link to a stored file is never written to
+                    Files.deleteIfExists(target);
+                    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+                    result.copied.increment();
+                    result.bytes.add(entry.getSize());
+                } else {
+                    copyChunked();
+                    result.copied.increment();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to copy " + source + " to " + target, e);
+            }
+        }
+
+        private void copyHashing() throws IOException {
+            MessageDigest digest = Hashes.sha256();
+            Files.deleteIfExists(target);
+            try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+                Files.copy(in, target);
+            }
+            Files.setLastModifiedTime(target, entry.getLastModified());
+            manifest.put(new Manifest.Entry(Manifest.toManifestPath(entry.getPath()), entry.getSize(), entry.getLastModified().toMillis(), Hashes.toHex(digest.digest()), false));
+        }
+
+        private void copyChunked() throws IOException {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                Files.deleteIfExists(target);
+                try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    // Preallocate so that the chunks can be written in any order
+                    out.write(ByteBuffer.wrap(new byte[1]), entry.getSize() - 1);
+                }
+                List<RecursiveAction> chunks = new ArrayList<>();
+                for (long position = 0; position < entry.getSize(); position += chunkSize) {
+                    chunks.add(new ChunkTask(in, target, position, Math.min(chunkSize, entry.getSize() - position), result));
+                }
+                invokeAll(chunks);
+            }
+            Files.setLastModifiedTime(target, entry.getLastModified());
+        }
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+        private final FileChannel in;
+        private final Path target;
+        private final long position;
+        private final long length;
+        private final Result result;
+
+        private ChunkTask(FileChannel in, Path target, long position, long length, Result result) {
+            this.in = in;
+            this.target = target;
+            this.position = position;
+            this.length = length;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                out.position(position);
+                long transferred = 0;
+                while (transferred < length) {
+                    long t = in.transferTo(position + transferred, length - transferred, out);
+                    if (t <= 0) {
+                        throw new IOException("Source " + target + " ended before " + (position + length) + " bytes");
+                    }
+                    transferred += t;
+                }
+                result.bytes.add(transferred);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to copy chunk at " + position + " of " + target, e);
+            }
+        }
+    }
+
+    public static class Scan {
+        private final Path root;
+        private final List<Path> directories;
+        private final List<Entry> files;
+
+        public Scan(Path root, List<Path> directories, List<Entry> files) {
+            this.root = root;
+            this.directories = Collections.unmodifiableList(directories);
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        /**
+         * Create a scan that only includes some of the files of this one. All folders are kept.
+         * @param filter The filter which files to include
+         * @return The new scan
+         */
+        public Scan filter(Predicate<Entry> filter) {
+            List<Entry> filtered = new ArrayList<>();
+            for (Entry file : files) {
+                if (filter.test(file)) {
+                    filtered.add(file);
+                }
+            }
+            return new Scan(root, new ArrayList<>(directories), filtered);
+        }
+
+        public Path getRoot() {
+            return root;
+        }
+
+        /**
+         * @return All folders relative to the root, parents always come before their children
+         */
+        public List<Path> getDirectories() {
+            return directories;
+        }
+
+        /**
+         * @return All files relative to the root
+         */
+        public Collection<Entry> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return The sum of all file sizes
+         */
+        public long getSize() {
+            long size = 0;
+            for (Entry file : files) {
+                size += file.getSize();
+            }
+            return size;
+        }
+
+        public static class Entry {
+            private final Path path;
+            private final long size;
+            private final FileTime lastModified;
+
+            public Entry(Path path, long size, FileTime lastModified) {
+                this.path = path;
+                this.size = size;
+                this.lastModified = lastModified;
+            }
+
+            public Path getPath() {
+                return path;
+            }
+
+            public long getSize() {
+                return size;
+            }
+
+            public FileTime getLastModified() {
+                return lastModified;
+            }
+        }
+    }
+
+    public static class Result {
+        private int directories = 0;
+        private final LongAdder copied = new LongAdder();
+        private final LongAdder linked = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private long duration = 0;
+
+        /**
+         * @return The amount of folders created
+         */
+        public int getDirectories() {
+            return directories;
+        }
+
+        /**
+         * @return The amount of files copied
+         */
+        public long getCopied() {
+            return copied.sum();
+        }
+
+        /**
+         * @return The amount of files linked
+         */
+        public long getLinked() {
+            return linked.sum();
+        }
+
+        /**
+         * @return The amount of bytes copied
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return The time the copy took in nanoseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return getCopied() + " files copied (" + getBytes() / 1024 / 1024 + " MiB), " + getLinked() + " linked, "
+                    + directories + " folders in " + duration / 1000000 + "ms";
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+
+/**
+ * Materializes a folder from a mod pack either by copying every file or by hard linking the files
+ * that the game never writes to. Files matching one of the copied patterns are always copied so
+ * that writes to them (configs, logs, caches) can't change the installed mod pack.
+ */
+public class FileStager {
+    public static final List<String> DEFAULT_COPIED_PATTERNS = Arrays.asList(
+            "modpack.properties",
+            "**.log",
+            "**.cfg",
+            "**.ini",
+            "BepInEx/config/**",
+            "BepInEx/cache/**",
+            // Generated by BepInEx at runtime and rewritten in place when the game updates
+            "BepInEx/unhollowed/**",
+            "BepInEx/interop/**",
+            "BepInEx/unity-libs/**",
+            "BepInEx/DumpedAssemblies/**"
+    );
+
+    private final ModPackLauncher launcher;
+    private final Mode mode;
+    private final List<PathMatcher> copiedMatchers = new ArrayList<>();
+    private volatile boolean linkingSupported = true;
+
+    public FileStager(ModPackLauncher launcher, Mode mode, Collection<String> copiedPatterns) {
+        this.launcher = launcher;
+        this.mode = mode;
+        for (String pattern : copiedPatterns) {
+            copiedMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    /**
+     * Try to link a single file. An existing target file will be replaced if the file gets linked.
+     * @param source The file to link
+     * @param target The location to link it to
+     * @param relative The path of the file relative to the staged folder, used for the copy patterns
+     * @return <code>true</code> if the file was linked, <code>false</code> if it needs to be copied
+     * @throws IOException If an existing target file could not be removed
+     */
+    public boolean link(Path source, Path target, Path relative) throws IOException {
+        if (mode == Mode.LINK && linkingSupported && !isCopied(relative)) {
+            try {
+                Files.deleteIfExists(target);
+                Files.createLink(target, source);
+                return true;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // Different volumes or a file system without hard links (e.g. FAT), no need to try it for every file
+                linkingSupported = false;
+                launcher.log(Level.WARNING, "Unable to link " + source + " to " + target + ", falling back to copying! " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a file always needs to be copied
+     * @param relative The path relative to the staged folder
+     * @return Whether or not the file matches one of the copied patterns
+     */
+    public boolean isCopied(Path relative) {
+        for (PathMatcher matcher : copiedMatchers) {
+            if (matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public enum Mode {
+        COPY,
+        LINK;
+
+        public static Mode fromString(String string) {
+            if (string != null) {
+                try {
+                    return valueOf(string.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException ignored) {}
+            }
+            return LINK;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class Hashes {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private Hashes() {}
+
+    /**
+     * Create a new SHA-256 digest
+     * @return The digest
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calculate the SHA-256 hash of a file
+     * @param file The file to hash
+     * @return The hash as a lower case hex string
+     * @throws IOException If the file could not be read
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = BUFFERS.get();
+        try (InputStream in = Files.newInputStream(file)) {
+            int r;
+            while ((r = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, r);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Calculate the SHA-256 hash of a string
+     * @param string The string to hash, encoded as UTF-8
+     * @return The hash as a lower case hex string
+     */
+    public static String sha256(String string) {
+        return toHex(sha256().digest(string.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Convert bytes to a lower case hex string
+     * @param bytes The bytes
+     * @return The hex string
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,177 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The list of files of a mod pack folder with their size, modification time and SHA-256 hash.
+ * Stored as modpack.manifest in the folder, one file per line.
+ */
+public class Manifest {
+    public static final String FILE_NAME = "modpack.manifest";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Load the manifest of a folder
+     * @param folder The folder
+     * @return The manifest or <code>null</code> if the folder has none
+     * @throws IOException If the manifest exists but could not be read
+     */
+    public static Manifest load(Path folder) throws IOException {
+        Manifest manifest = new Manifest();
+        try (BufferedReader reader = Files.newBufferedReader(folder.resolve(FILE_NAME), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // The path comes last as it may contain spaces
+                String[] parts = line.split(" ", 5);
+                if (parts.length < 5) {
+                    throw new IOException("Invalid manifest line in " + folder + ": " + line);
+                }
+                try {
+                    manifest.put(new Entry(parts[4], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[0], "1".equals(parts[3])));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid manifest line in " + folder + ": " + line, e);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return manifest;
+    }
+
+    /**
+     * Save this manifest into a folder, replacing the previous one atomically
+     * @param folder The folder
+     * @throws IOException If the manifest could not be written
+     */
+    public void save(Path folder) throws IOException {
+        Path temp = folder.resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# sha256 size last-modified stored path");
+            writer.newLine();
+            for (Entry entry : entries.values()) {
+                writer.write(entry.sha256 + " " + entry.size + " " + entry.lastModified + " " + (entry.stored ? "1" : "0") + " " + entry.path);
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temp, folder.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, folder.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized void put(Entry entry) {
+        entries.put(entry.path, entry);
+    }
+
+    /**
+     * Get the entry of a file
+     * @param path The path relative to the folder, separated by /
+     * @return The entry or <code>null</code> if the file isn't listed
+     */
+    public synchronized Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public synchronized Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Get the sum of the sizes of all files in the manifest
+     * @return The size in bytes
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (Entry entry : entries.values()) {
+            size += entry.size;
+        }
+        return size;
+    }
+
+    /**
+     * Convert a relative path to the format used in manifests
+     * @param relative The path relative to the folder
+     * @return The path separated by /
+     */
+    public static String toManifestPath(Path relative) {
+        return relative.toString().replace('\\', '/');
+    }
+
+    public static class Entry {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+        private final boolean stored;
+
+        /**
+         * @param path The path relative to the folder, separated by /
+         * @param size The size in bytes
+         * @param lastModified The modification time in milliseconds
+         * @param sha256 The SHA-256 hash as a hex string
+         * @param stored Whether the file is a link to a blob in the store
+         */
+        public Entry(String path, long size, long lastModified, String sha256, boolean stored) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+            this.stored = stored;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public boolean isStored() {
+            return stored;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Checks mod pack folders against their {@link Manifest} and restores files that don't match it.
+ * Files whose size and modification time still match the manifest are trusted without reading
+ * them, all other files are hashed in parallel.
+ */
+public class PackVerifier {
+    private final FileCopier copier;
+    private final ForkJoinPool pool;
+
+    public PackVerifier(FileCopier copier) {
+        this.copier = copier;
+        this.pool = new ForkJoinPool(copier.getParallelism());
+    }
+
+    /**
+     * Create the manifest of a folder and save it in the folder. Files are only hashed if they
+     * changed since the known manifest was created.
+     * @param folder The folder
+     * @param known The previous manifest of the folder or <code>null</code> if there is none
+     * @return The new manifest
+     * @throws IOException If a file could not be read
+     */
+    public Manifest createManifest(Path folder, Manifest known) throws IOException {
+        Manifest manifest = new Manifest();
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (FileCopier.Scan.Entry file : copier.scan(folder).getFiles()) {
+            String path = Manifest.toManifestPath(file.getPath());
+            if (isManifestFile(path)) {
+                continue;
+            }
+            Manifest.Entry knownEntry = known != null ? known.get(path) : null;
+            long lastModified = file.getLastModified().toMillis();
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        if (knownEntry != null && knownEntry.getSize() == file.getSize() && knownEntry.getLastModified() == lastModified) {
+                            manifest.put(knownEntry);
+                        } else {
+                            manifest.put(new Manifest.Entry(path, file.getSize(), lastModified, Hashes.sha256(folder.resolve(file.getPath())), false));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to hash " + file.getPath() + " of " + folder, e);
+                    }
+                }
+            });
+        }
+        invoke(tasks);
+        manifest.save(folder);
+        return manifest;
+    }
+
+    /**
+     * Verify the files of a folder against its manifest
+     * @param folder The folder
+     * @param manifest The manifest of the folder
+     * @param full Whether to hash every file instead of trusting files with a matching size and modification time
+     * @param ignoreChanges Filter for the relative paths of files that may be changed, they are only checked for existence
+     * @return The result of the verification
+     * @throws IOException If the folder could not be scanned or a file could not be read
+     */
+    public Result verify(Path folder, Manifest manifest, boolean full, Predicate<Path> ignoreChanges) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        Map<String, FileCopier.Scan.Entry> files = new HashMap<>();
+        for (FileCopier.Scan.Entry file : copier.scan(folder).getFiles()) {
+            String path = Manifest.toManifestPath(file.getPath());
+            if (isManifestFile(path)) {
+                continue;
+            }
+            files.put(path, file);
+            if (manifest.get(path) == null && !ignoreChanges.test(file.getPath())) {
+                result.add(new Problem(Problem.Type.EXTRA, path, null));
+            }
+        }
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (Manifest.Entry entry : manifest.getEntries()) {
+            FileCopier.Scan.Entry file = files.get(entry.getPath());
+            result.files.incrementAndGet();
+            if (file == null) {
+                result.add(new Problem(Problem.Type.MISSING, entry.getPath(), entry));
+            } else if (ignoreChanges.test(file.getPath())) {
+                continue;
+            } else if (file.getSize() != entry.getSize()) {
+                result.add(new Problem(Problem.Type.CHANGED, entry.getPath(), entry));
+            } else if (full || file.getLastModified().toMillis() != entry.getLastModified()) {
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        try {
+                            String sha256 = Hashes.sha256(folder.resolve(file.getPath()));
+                            result.hashedFiles.incrementAndGet();
+                            result.hashedBytes.addAndGet(file.getSize());
+                            if (!sha256.equals(entry.getSha256())) {
+                                result.add(new Problem(Problem.Type.CHANGED, entry.getPath(), entry));
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Unable to hash " + file.getPath() + " of " + folder, e);
+                        }
+                    }
+                });
+            }
+        }
+        invoke(tasks);
+        result.duration = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Restore the missing and changed files of a verification result. Each file is restored from
+     * the first source that provides a file with the expected hash.
+     * @param folder The folder to repair
+     * @param manifest The manifest of the folder, restored files get updated in it
+     * @param problems The problems found while verifying the folder
+     * @param sources The sources to restore files from in the order that they should be tried
+     * @return The problems that could not be repaired
+     * @throws IOException If the manifest could not be saved
+     */
+    public List<Problem> repair(Path folder, Manifest manifest, List<Problem> problems, List<Source> sources) throws IOException {
+        List<Problem> failed = Collections.synchronizedList(new ArrayList<>());
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (Problem problem : problems) {
+            if (problem.getExpected() == null) {
+                // Extra files are left alone, they might be added by the user on purpose
+                continue;
+            }
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    Manifest.Entry expected = problem.getExpected();
+                    Path target = folder.resolve(expected.getPath());
+                    for (Source source : sources) {
+                        try {
+                            Files.createDirectories(target.getParent());
+                            if (source.restore(expected, target) && Hashes.sha256(target).equals(expected.getSha256())) {
+                                manifest.put(new Manifest.Entry(expected.getPath(), expected.getSize(), Files.getLastModifiedTime(target).toMillis(), expected.getSha256(), false));
+                                return;
+                            }
+                        } catch (IOException e) {
+                            // Try the next source
+                        }
+                    }
+                    failed.add(problem);
+                }
+            });
+        }
+        invoke(tasks);
+        manifest.save(folder);
+        return failed;
+    }
+
+    private static boolean isManifestFile(String path) {
+        return path.equals(Manifest.FILE_NAME) || path.equals(Manifest.FILE_NAME + ".tmp");
+    }
+
+    private void invoke(List<RecursiveAction> tasks) throws IOException {
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A place that known good copies of files can be restored from
+     */
+    public interface Source {
+        /**
+         * Restore a file. The target is replaced if it exists, the restored file gets checked against the hash afterwards.
+         * @param expected The manifest entry of the file
+         * @param target The file to restore
+         * @return Whether or not this source had a copy of the file
+         * @throws IOException If the file could not be restored
+         */
+        boolean restore(Manifest.Entry expected, Path target) throws IOException;
+    }
+
+    public static class Problem {
+        private final Type type;
+        private final String path;
+        private final Manifest.Entry expected;
+
+        public Problem(Type type, String path, Manifest.Entry expected) {
+            this.type = type;
+            this.path = path;
+            this.expected = expected;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The manifest entry of the file or <code>null</code> if it isn't in the manifest
+         */
+        public Manifest.Entry getExpected() {
+            return expected;
+        }
+
+        @Override
+        public String toString() {
+            return type.name().toLowerCase(Locale.ROOT) + " " + path;
+        }
+
+        public enum Type {
+            MISSING,
+            CHANGED,
+            EXTRA
+        }
+    }
+
+    public static class Result {
+        private final List<Problem> problems = new ArrayList<>();
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicInteger hashedFiles = new AtomicInteger();
+        private final AtomicLong hashedBytes = new AtomicLong();
+        private long duration = 0;
+
+        private synchronized void add(Problem problem) {
+            problems.add(problem);
+        }
+
+        /**
+         * @return The problems that were found, including extra files
+         */
+        public synchronized List<Problem> getProblems() {
+            return new ArrayList<>(problems);
+        }
+
+        /**
+         * @return Whether or not no file is missing or changed
+         */
+        public synchronized boolean isIntact() {
+            for (Problem problem : problems) {
+                if (problem.getType() != Problem.Type.EXTRA) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return The amount of files in the manifest
+         */
+        public int getFiles() {
+            return files.get();
+        }
+
+        /**
+         * @return The amount of files that had to be hashed
+         */
+        public int getHashedFiles() {
+            return hashedFiles.get();
+        }
+
+        /**
+         * @return The amount of bytes that were hashed
+         */
+        public long getHashedBytes() {
+            return hashedBytes.get();
+        }
+
+        /**
+         * @return The duration of the verification in nanoseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return files + " files, hashed " + hashedFiles + " (" + (hashedBytes.get() / 1024 / 1024) + " MiB), "
+                    + problems.size() + " problems in " + (duration / 1000000) + "ms";
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package tv.moep.amongus.modpacklauncher.io;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts zip archives by first creating all folders from the central directory and then
+ * inflating the file entries in parallel with one reused buffer per thread.
+ */
+public class ZipExtractor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    public ZipExtractor(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * Extract a zip file into a folder. Existing files are replaced. If any entry would end up
+     * outside of the target folder then nothing gets extracted.
+     * @param zipFile The zip file to extract
+     * @param targetFolder The folder to extract into
+     * @return The result of the extraction, check {@link Result#getFailures()} for entries that failed
+     * @throws IOException If the zip file could not be read or a folder could not be created
+     */
+    public Result extract(File zipFile, Path targetFolder) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        Path root = targetFolder.toAbsolutePath().normalize();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Set<Path> directories = new LinkedHashSet<>();
+            List<RecursiveAction> tasks = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path entryPath = root.resolve(entry.getName()).normalize();
+                if (!entryPath.startsWith(root) || entryPath.equals(root) && !entry.isDirectory()) {
+                    result.failures.add(new Failure(entry.getName(), "Entry is outside of the target folder"));
+                } else if (entry.isDirectory()) {
+                    directories.add(entryPath);
+                } else {
+                    directories.add(entryPath.getParent());
+                    tasks.add(new EntryTask(zip, entry, entryPath, result));
+                }
+            }
+
+            if (!result.failures.isEmpty()) {
+                result.duration = System.nanoTime() - start;
+                return result;
+            }
+
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        result.duration = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Extract a zip archive while reading it sequentially from a stream. Like with files nothing
+     * is left extracted if any entry would end up outside of the target folder: extraction stops at
+     * that entry and the files and folders it already created are removed again. The same happens
+     * if reading the archive fails. Files that were replaced can't be restored though, so callers
+     * should extract into a folder that they discard on failure.
+     * <p>
+     * The stream is read to its end afterwards and the archive only counts as extracted if it ends
+     * with its end of central directory record, as a stream cut off between two entries looks like
+     * a complete archive otherwise.
+     * @param in The stream to read the archive from
+     * @param targetFolder The folder to extract into
+     * @return The result of the extraction, check {@link Result#getFailures()} for entries that failed
+     * @throws ZipException If the archive can't be read sequentially (e.g. stored entries with data descriptors) or is incomplete
+     * @throws IOException If the stream could not be read or a file could not be written
+     */
+    public Result extract(InputStream in, Path targetFolder) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        Path root = targetFolder.toAbsolutePath().normalize();
+        Set<Path> directories = new HashSet<>();
+        List<Path> createdDirectories = new ArrayList<>();
+        List<Path> createdFiles = new ArrayList<>();
+        byte[] buffer = buffers.get();
+        EndRecordInputStream tracked = new EndRecordInputStream(in);
+        try (ZipInputStream zip = new ZipInputStream(tracked)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Path entryPath = root.resolve(entry.getName()).normalize();
+                if (!entryPath.startsWith(root) || entryPath.equals(root) && !entry.isDirectory()) {
+                    result.failures.add(new Failure(entry.getName(), "Entry is outside of the target folder"));
+                    rollback(createdFiles, createdDirectories);
+                    result.entries.reset();
+                    result.bytes.reset();
+                    break;
+                }
+                Path directory = entry.isDirectory() ? entryPath : entryPath.getParent();
+                if (directories.add(directory)) {
+                    createDirectories(directory, root, createdDirectories);
+                }
+                if (!entry.isDirectory()) {
+                    Files.deleteIfExists(entryPath);
+                    createdFiles.add(entryPath);
+                    long written = 0;
+                    try (OutputStream out = Files.newOutputStream(entryPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                        int r;
+                        while ((r = zip.read(buffer)) != -1) {
+                            out.write(buffer, 0, r);
+                            written += r;
+                        }
+                    }
+                    result.entries.increment();
+                    result.bytes.add(written);
+                }
+            }
+            if (result.failures.isEmpty()) {
+                // The central directory isn't needed for extracting but shows that nothing is missing
+                while (tracked.read(buffer) != -1) {
+                    // Read to the end
+                }
+                if (!tracked.hasEndRecord()) {
+                    throw new ZipException("Archive ended without its end of central directory record after " + tracked.count + " bytes, it is incomplete");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            rollback(createdFiles, createdDirectories);
+            throw e;
+        }
+        if (result.getEntries() == 0 && result.failures.isEmpty()) {
+            throw new ZipException("No entries found in stream");
+        }
+        result.duration = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Create a folder and remember the ones that didn't exist yet, from the outermost to the innermost
+     */
+    private static void createDirectories(Path directory, Path root, List<Path> created) throws IOException {
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path path = directory; path != null && path.startsWith(root) && !Files.isDirectory(path); path = path.getParent()) {
+            missing.push(path);
+        }
+        Files.createDirectories(directory);
+        created.addAll(missing);
+    }
+
+    private static void rollback(List<Path> files, List<Path> directories) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // The caller discards the target folder anyways
+            }
+        }
+        for (int i = directories.size() - 1; i >= 0; i--) {
+            try {
+                Files.deleteIfExists(directories.get(i));
+            } catch (IOException ignored) {
+                // Not empty, e.g. because a file couldn't be deleted
+            }
+        }
+    }
+
+    /**
+     * Keeps the last bytes of a stream to find the end of central directory record of a zip archive
+     */
+    private static class EndRecordInputStream extends FilterInputStream {
+        private static final int END_RECORD_SIZE = 22;
+        private static final int MAX_END_SIZE = END_RECORD_SIZE + 0xFFFF;
+
+        private final byte[] tail = new byte[MAX_END_SIZE];
+        private long count = 0;
+
+        private EndRecordInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                tail[(int) (count++ % MAX_END_SIZE)] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int r = super.read(b, off, len);
+            for (int i = 0; i < r; i++) {
+                tail[(int) (count++ % MAX_END_SIZE)] = b[off + i];
+            }
+            return r;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes need to be seen too
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int r = read(buffer, 0, buffer.length);
+            return Math.max(0, r);
+        }
+
+        /**
+         * Check whether the stream read so far ends with an end of central directory record, that is its
+         * signature followed by 18 bytes with the length of the comment in the last two and the comment.
+         */
+        private boolean hasEndRecord() {
+            int available = (int) Math.min(count, MAX_END_SIZE);
+            for (int distance = END_RECORD_SIZE; distance <= available; distance++) {
+                long start = count - distance;
+                if (byteAt(start) == 'P' && byteAt(start + 1) == 'K' && byteAt(start + 2) == 5 && byteAt(start + 3) == 6) {
+                    int commentLength = (byteAt(start + 20) & 0xFF) | (byteAt(start + 21) & 0xFF) << 8;
+                    if (END_RECORD_SIZE + commentLength == distance) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private byte byteAt(long position) {
+            return tail[(int) (position % MAX_END_SIZE)];
+        }
+    }
+
+    private class EntryTask extends RecursiveAction {
+        private final ZipFile zip;
+        private final ZipEntry entry;
+        private final Path target;
+        private final Result result;
+
+        private EntryTask(ZipFile zip, ZipEntry entry, Path target, Result result) {
+            this.zip = zip;
+            this.entry = entry;
+            this.target = target;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            byte[] buffer = buffers.get();
+            try {
+                // Remove the old file first instead of truncating it as it might be a hard link to another folder
+                Files.deleteIfExists(target);
+                long written = 0;
+                try (InputStream in = zip.getInputStream(entry);
+                     OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    int r;
+                    while ((r = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, r);
+                        written += r;
+                    }
+                }
+                result.entries.increment();
+                result.bytes.add(written);
+            } catch (IOException e) {
+                result.failures.add(new Failure(entry.getName(), e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+        }
+    }
+
+    public static class Result {
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+        private long duration = 0;
+
+        /**
+         * @return The amount of extracted file entries
+         */
+        public long getEntries() {
+            return entries.sum();
+        }
+
+        /**
+         * @return The amount of uncompressed bytes written
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return The entries which could not be extracted
+         */
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(new ArrayList<>(failures));
+        }
+
+        /**
+         * @return The time the extraction took in nanoseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return getEntries() + " entries (" + getBytes() / 1024 + " KiB) extracted, " + failures.size() + " failed in " + duration / 1000000 + "ms";
+        }
+    }
+
+    public static class Failure {
+        private final String entry;
+        private final String reason;
+
+        public Failure(String entry, String reason) {
+            this.entry = entry;
+            this.reason = reason;
+        }
+
+        public String getEntry() {
+            return entry;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return entry + " (" + reason + ")";
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package tv.moep.amongus.modpacklauncher.metrics;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Registry of the metrics of the launcher's operations. Every operation is registered as an MBean
+ * when it is first recorded and the metrics can be dumped to a file periodically.
+ */
+public class Metrics {
+    public static final String DOMAIN = "tv.moep.amongus.modpacklauncher";
+
+    private final ModPackLauncher launcher;
+    private final boolean jmx;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private ScheduledExecutorService dumper = null;
+
+    /**
+     * @param launcher The launcher
+     * @param jmx Whether or not to register the operations as MBeans
+     */
+    public Metrics(ModPackLauncher launcher, boolean jmx) {
+        this.launcher = launcher;
+        this.jmx = jmx;
+    }
+
+    /**
+     * Get the metrics of an operation, creating and registering them if they don't exist yet
+     * @param operation The name of the operation
+     * @return The metrics of the operation
+     */
+    public OperationMetrics get(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics == null) {
+            OperationMetrics created = new OperationMetrics(operation);
+            metrics = operations.putIfAbsent(operation, created);
+            if (metrics == null) {
+                metrics = created;
+                register(created);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Start measuring an execution of an operation. The sample is recorded as a failure when it
+     * is closed without {@link Sample#success(long)} having been called.
+     * @param operation The name of the operation
+     * @return The sample to close when the operation is done
+     */
+    public Sample start(String operation) {
+        return new Sample(get(operation));
+    }
+
+    /**
+     * Get the metrics of all operations that were recorded
+     * @return The metrics ordered by the operation name
+     */
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> list = new ArrayList<>(operations.values());
+        list.sort(Comparator.comparing(OperationMetrics::getName));
+        return list;
+    }
+
+    private void register(OperationMetrics metrics) {
+        if (!jmx) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(metrics, getObjectName(metrics.getName()));
+        } catch (JMException | SecurityException e) {
+            launcher.log(Level.WARNING, "Unable to register MBean for " + metrics.getName() + " metrics! " + e.getMessage());
+        }
+    }
+
+    private static ObjectName getObjectName(String operation) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Operation,name=" + ObjectName.quote(operation));
+    }
+
+    /**
+     * Start writing the metrics to a file periodically, replaces a previously started dump
+     * @param file The file to write to
+     * @param interval The interval in seconds
+     */
+    public synchronized void startDump(Path file, long interval) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, launcher.getName() + " Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleWithFixedDelay(() -> {
+            try {
+                dump(file);
+            } catch (IOException e) {
+                launcher.log(Level.WARNING, "Unable to write metrics to " + file + "! " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop writing the metrics periodically
+     */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Write the metrics of all operations to a file in the properties format
+     * @param file The file to write to
+     * @throws IOException If the file could not be written
+     */
+    public void dump(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# " + launcher.getName() + " " + launcher.getVersion() + " Metrics\n");
+            writer.write("# " + Instant.now() + "\n");
+            for (OperationMetrics metrics : getOperations()) {
+                String prefix = metrics.getName() + ".";
+                writer.write(prefix + "count=" + metrics.getCount() + "\n");
+                writer.write(prefix + "failures=" + metrics.getFailures() + "\n");
+                writer.write(prefix + "bytes=" + metrics.getBytes() + "\n");
+                writer.write(prefix + "total-ms=" + format(metrics.getTotalMillis()) + "\n");
+                writer.write(prefix + "mean-ms=" + format(metrics.getMeanMillis()) + "\n");
+                writer.write(prefix + "p50-ms=" + format(metrics.getMedianMillis()) + "\n");
+                writer.write(prefix + "p95-ms=" + format(metrics.get95thPercentileMillis()) + "\n");
+                writer.write(prefix + "p99-ms=" + format(metrics.get99thPercentileMillis()) + "\n");
+                writer.write(prefix + "max-ms=" + format(metrics.getMaxMillis()) + "\n");
+                writer.write(prefix + "histogram=" + formatHistogram(metrics) + "\n");
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+
+    /**
+     * Format the histogram as upper bound in milliseconds and count pairs, e.g. "<=1:3,<=2:0,>300000:0"
+     */
+    private static String formatHistogram(OperationMetrics metrics) {
+        long[] bounds = metrics.getHistogramBoundsMillis();
+        long[] counts = metrics.getHistogramCounts();
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                histogram.append(',');
+            }
+            histogram.append(i < bounds.length ? "<=" + bounds[i] : ">" + bounds[bounds.length - 1]).append(':').append(counts[i]);
+        }
+        return histogram.toString();
+    }
+
+    /**
+     * A single execution of an operation that is being measured
+     */
+    public static class Sample implements AutoCloseable {
+        private final OperationMetrics metrics;
+        private final long start = System.nanoTime();
+        private long bytes = 0;
+        private boolean success = false;
+
+        private Sample(OperationMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * Mark the execution as successful
+         * @param bytes The amount of bytes that were processed
+         */
+        public void success(long bytes) {
+            this.bytes = bytes;
+            this.success = true;
+        }
+
+        /**
+         * Mark the execution as successful without processing bytes
+         */
+        public void success() {
+            success(0);
+        }
+
+        /**
+         * Record the execution
+         */
+        @Override
+        public void close() {
+            metrics.record(System.nanoTime() - start, bytes, success);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package tv.moep.amongus.modpacklauncher.metrics;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters, byte totals and a latency histogram of one operation. Recording only adds to a few
+ * striped counters so it can be done from many threads at the same time without contention.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000, 300000};
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_MILLIS.length];
+    static {
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] histogram = new LongAdder[BOUNDS_NANOS.length + 1];
+
+    OperationMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record one execution of the operation
+     * @param nanos How long it took in nanoseconds
+     * @param bytes The amount of bytes that were processed
+     * @param success Whether or not it succeeded
+     */
+    public void record(long nanos, long bytes, boolean success) {
+        count.increment();
+        if (!success) {
+            failures.increment();
+        }
+        if (bytes > 0) {
+            this.bytes.add(bytes);
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        histogram[bucket].increment();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1000000.0;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = getCount();
+        return count > 0 ? getTotalMillis() / count : 0;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1000000.0;
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return getPercentileMillis(0.5);
+    }
+
+    @Override
+    public double get95thPercentileMillis() {
+        return getPercentileMillis(0.95);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return getPercentileMillis(0.99);
+    }
+
+    /**
+     * Estimate a percentile from the histogram. The result is the upper bound of the bucket that
+     * contains the percentile but at most the maximum that was recorded.
+     * @param percentile The percentile between 0 and 1
+     * @return The estimated duration in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = getHistogramCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_MILLIS[i], getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public long[] getHistogramBoundsMillis() {
+        return BOUNDS_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getHistogramCounts() {
+        long[] counts = new long[histogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            counts[i] = histogram[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        failures.reset();
+        bytes.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (LongAdder bucket : histogram) {
+            bucket.reset();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package tv.moep.amongus.modpacklauncher.metrics;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The metrics of one operation as exposed over JMX
+ */
+public interface OperationMetricsMXBean {
+
+    String getName();
+
+    long getCount();
+
+    long getFailures();
+
+    /**
+     * @return The amount of bytes that were transferred, extracted or copied
+     */
+    long getBytes();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getMedianMillis();
+
+    double get95thPercentileMillis();
+
+    double get99thPercentileMillis();
+
+    /**
+     * @return The upper bounds of the histogram buckets in milliseconds, the last bucket has no upper bound
+     */
+    long[] getHistogramBoundsMillis();
+
+    /**
+     * @return The amount of operations in each histogram bucket
+     */
+    long[] getHistogramCounts();
+
+    /**
+     * Reset all values to zero
+     */
+    void reset();
+}
@@ -0,0 +1,340 @@
+package tv.moep.amongus.modpacklauncher.remote;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+import tv.moep.amongus.modpacklauncher.io.Hashes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Persistent cache of downloaded update assets keyed by the source, the asset url and the version.
+ * Entries are verified by their size and SHA-256 hash and the least recently used ones are evicted
+ * once the cache grows over its size limit. Assets that were handed out are not evicted until they
+ * are {@link #release}d again. Access times are only written with the next change of the index.
+ */
+public class AssetCache {
+    private static final String INDEX_FILE = "index.properties";
+
+    private final ModPackLauncher launcher;
+    private final Path folder;
+    private final long maxSize;
+    // Access ordered so that iterating starts at the least recently used entry
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> verified = new HashSet<>();
+    private long size = 0;
+
+    public AssetCache(ModPackLauncher launcher, Path folder, long maxSize) {
+        this.launcher = launcher;
+        this.folder = folder;
+        this.maxSize = maxSize;
+        loadIndex();
+    }
+
+    private void loadIndex() {
+        Path indexFile = folder.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        Properties index = new Properties();
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            index.load(in);
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Unable to load asset cache index " + indexFile, e);
+            return;
+        }
+        entries.clear();
+        index.stringPropertyNames().stream()
+                .filter(k -> k.endsWith(".file"))
+                .map(k -> k.substring(0, k.length() - ".file".length()))
+                .map(key -> {
+                    try {
+                        return new Entry(key,
+                                index.getProperty(key + ".file"),
+                                Long.parseLong(index.getProperty(key + ".size")),
+                                index.getProperty(key + ".sha256"),
+                                Long.parseLong(index.getProperty(key + ".accessed")));
+                    } catch (NumberFormatException | NullPointerException e) {
+                        launcher.log(Level.WARNING, "Invalid asset cache entry " + key);
+                        return null;
+                    }
+                })
+                .filter(e -> e != null)
+                .sorted((e1, e2) -> Long.compare(e1.accessed, e2.accessed))
+                .forEach(e -> {
+                    entries.put(e.key, e);
+                    size += e.size;
+                });
+    }
+
+    private void saveIndex() {
+        Properties index = new Properties();
+        for (Entry entry : entries.values()) {
+            index.setProperty(entry.key + ".file", entry.fileName);
+            index.setProperty(entry.key + ".size", String.valueOf(entry.size));
+            index.setProperty(entry.key + ".sha256", entry.sha256);
+            index.setProperty(entry.key + ".accessed", String.valueOf(entry.accessed));
+        }
+        try {
+            Files.createDirectories(folder);
+            Path temp = folder.resolve(INDEX_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                index.store(out, launcher.getName() + " " + launcher.getVersion() + " Asset Cache");
+            }
+            Files.move(temp, folder.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Unable to save asset cache index", e);
+        }
+    }
+
+    private static String getKey(String source, UpdateAsset asset) {
+        return Hashes.sha256(source + "\n" + asset.getUrl() + "\n" + asset.getVersion());
+    }
+
+    /**
+     * Get a cached asset. It has to be {@link #release}d once it isn't used anymore.
+     * @param source The name of the source of the asset
+     * @param asset The asset
+     * @return The cached file or <code>null</code> if it isn't cached or didn't pass verification
+     */
+    public File get(String source, UpdateAsset asset) {
+        String key = getKey(source, asset);
+        Entry entry;
+        boolean verify;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            // Keeps it from being evicted while it is verified and used
+            entry.users++;
+            verify = !verified.contains(key);
+        }
+        Path file = getPath(entry);
+        try {
+            if (Files.size(file) != entry.size) {
+                throw new IOException("Size of " + file + " doesn't match, expected " + entry.size);
+            }
+            if (verify && !Hashes.sha256(file).equals(entry.sha256)) {
+                throw new IOException("Hash of " + file + " doesn't match, expected " + entry.sha256);
+            }
+        } catch (NoSuchFileException e) {
+            launcher.log(Level.WARNING, "Cached asset " + file + " doesn't exist anymore");
+            discard(entry);
+            return null;
+        } catch (IOException e) {
+            launcher.log(Level.WARNING, "Removing invalid cached asset " + asset.getFileName() + "! " + e.getMessage());
+            discard(entry);
+            return null;
+        }
+        synchronized (this) {
+            if (entries.get(key) != entry) {
+                // Replaced or removed in the meantime
+                entry.users--;
+                return null;
+            }
+            verified.add(key);
+            entry.accessed = System.currentTimeMillis();
+        }
+        return file.toFile();
+    }
+
+    private synchronized void discard(Entry entry) {
+        entry.users--;
+        if (entries.get(entry.key) == entry) {
+            remove(entry);
+            saveIndex();
+        }
+    }
+
+    /**
+     * Move a downloaded file into the cache, evicting the least recently used assets if necessary.
+     * The returned file has to be {@link #release}d once it isn't used anymore.
+     * @param source The name of the source of the asset
+     * @param asset The asset that was downloaded
+     * @param downloaded The downloaded file, it is moved away from its location
+     * @return The cached file or a temporary file named like the asset if it could not be cached
+     */
+    public File put(String source, UpdateAsset asset, File downloaded) {
+        String key = getKey(source, asset);
+        try {
+            // Hashed before locking so that other lookups aren't blocked by large assets
+            Entry entry = new Entry(key, asset.getFileName(), Files.size(downloaded.toPath()), Hashes.sha256(downloaded.toPath()), System.currentTimeMillis());
+            if (entry.size <= maxSize) {
+                synchronized (this) {
+                    Entry previous = entries.get(key);
+                    if (previous != null) {
+                        remove(previous);
+                    }
+                    Path target = getPath(entry);
+                    Files.createDirectories(target.getParent());
+                    Files.move(downloaded.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+                    entry.users++;
+                    entries.put(key, entry);
+                    verified.add(key);
+                    size += entry.size;
+                    evict();
+                    saveIndex();
+                    return target.toFile();
+                }
+            }
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Unable to cache " + downloaded, e);
+        }
+        try {
+            Path temp = launcher.createDownloadFile(asset.getFileName());
+            Files.move(downloaded.toPath(), temp);
+            return temp.toFile();
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Unable to move " + downloaded + " out of the asset cache", e);
+            return downloaded;
+        }
+    }
+
+    /**
+     * Release an asset that was returned by {@link #get} or {@link #put} so that it can be evicted
+     * again. Other files in the cache folder, like downloads that could not be cached, get deleted.
+     * @param file The file
+     */
+    public synchronized void release(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        for (Entry entry : entries.values()) {
+            if (getPath(entry).toAbsolutePath().normalize().equals(path)) {
+                entry.users = Math.max(0, entry.users - 1);
+                if (size > maxSize) {
+                    evict();
+                    saveIndex();
+                }
+                return;
+            }
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            launcher.log(Level.WARNING, "Unable to delete " + file + "! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a temporary file inside of the cache folder to download an asset into before {@link #put}ting it
+     * @return The path to the temporary file
+     * @throws IOException If the file could not be created
+     */
+    public Path createTempFile() throws IOException {
+        Files.createDirectories(folder);
+        return Files.createTempFile(folder, "download", ".tmp");
+    }
+
+    /**
+     * Get the file that an asset should be downloaded to before {@link #put}ting it. The file stays the
+     * same for an asset so that downloads can be resumed.
+     * @param source The name of the source of the asset
+     * @param asset The asset that will be downloaded
+     * @return The path to the partial file
+     * @throws IOException If the folder could not be created
+     */
+    public Path getPartialFile(String source, UpdateAsset asset) throws IOException {
+        Path partialFolder = folder.resolve("partial");
+        Files.createDirectories(partialFolder);
+        return partialFolder.resolve(getKey(source, asset) + ".part");
+    }
+
+    /**
+     * Check whether or not a file is stored in this cache and therefore shouldn't be deleted
+     * @param file The file to check
+     * @return Whether or not it is inside the cache folder
+     */
+    public boolean contains(File file) {
+        return file.toPath().toAbsolutePath().normalize().startsWith(folder.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Get the size of all cached assets
+     * @return The size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Entry entry = it.next();
+            // Assets in use, e.g. by an install that is still queued, are kept until they are released
+            if (entry.users == 0) {
+                it.remove();
+                delete(entry);
+                launcher.log(Level.INFO, "Evicted " + entry.fileName + " from the asset cache");
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        delete(entry);
+    }
+
+    private void delete(Entry entry) {
+        size -= entry.size;
+        verified.remove(entry.key);
+        Path file = getPath(entry);
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.getParent());
+        } catch (IOException e) {
+            launcher.log(Level.WARNING, "Unable to delete cached asset " + file + "! " + e.getMessage());
+        }
+    }
+
+    private Path getPath(Entry entry) {
+        // Keep the original file name as some assets get copied as-is
+        return folder.resolve(entry.key).resolve(entry.fileName);
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String fileName;
+        private final long size;
+        private final String sha256;
+        private long accessed;
+        private int users = 0;
+
+        private Entry(String key, String fileName, long size, String sha256, long accessed) {
+            this.key = key;
+            this.fileName = fileName;
+            this.size = size;
+            this.sha256 = sha256;
+            this.accessed = accessed;
+        }
+    }
+}
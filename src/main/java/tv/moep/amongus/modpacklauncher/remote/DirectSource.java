@@ -22,14 +22,8 @@ import de.themoep.minedown.adventure.Replacer;
 import tv.moep.amongus.modpacklauncher.ModPackConfig;
 import tv.moep.amongus.modpacklauncher.ModPackLauncher;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -60,25 +54,14 @@ public class DirectSource extends ModPackSource {
     }
 
     @Override
-    public File downloadUpdate(ModPackConfig config, String gameVersion) {
+    public UpdateAsset getUpdateAsset(ModPackConfig config, String gameVersion) {
         String version = config.getLatestVersion();
         if (version != null) {
-
             try {
                 URL source = new URL(new Replacer().replace(config.getPlaceholders()).replaceIn(download));
-                File target = new File(launcher.getTempFolder(), source.getPath().substring(source.getPath().lastIndexOf('/') + 1));
-
-                HttpURLConnection con = (HttpURLConnection) source.openConnection();
-                con.setUseCaches(false);
-                con.setRequestProperty("User-Agent", launcher.getUserAgent());
-                con.connect();
-                try (InputStream in = con.getInputStream()) {
-                    if (Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING) > 0) {
-                        return target;
-                    }
-                }
-            } catch (IOException e) {
-                launcher.log(Level.SEVERE, "Error while trying to download update " + version + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
+                return new UpdateAsset(version, source.getPath().substring(source.getPath().lastIndexOf('/') + 1), source);
+            } catch (MalformedURLException e) {
+                launcher.log(Level.SEVERE, "Invalid URL for downloading update " + version + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
             }
         }
 
@@ -18,29 +18,22 @@ package tv.moep.amongus.modpacklauncher.remote;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import de.themoep.minedown.adventure.Replacer;
 import tv.moep.amongus.modpacklauncher.ContentType;
 import tv.moep.amongus.modpacklauncher.ModPackConfig;
 import tv.moep.amongus.modpacklauncher.ModPackLauncher;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 public class GitHubSource extends ModPackSource {
@@ -50,6 +43,7 @@ public class GitHubSource extends ModPackSource {
     private static final String RELEASES_URL = "https://api.github.com/repos/%user%/%repository%/releases";
     private static final String UPDATE_URL = "https://github.com/%user%/%repository%/releases/tag/%version%";
     private static final String INFO_URL = "https://github.com/%user%/%repository%#readme";
+    private static final Predicate<ReleaseIndex.Asset> DOWNLOADABLE = asset -> ContentType.ZIP.matches(asset.getContentType()) || ContentType.DLL.matches(asset.getContentType());
 
     public GitHubSource(ModPackLauncher launcher) {
         super(launcher, REQUIRED_PLACEHOLDERS);
@@ -57,126 +51,132 @@ public class GitHubSource extends ModPackSource {
 
     @Override
     public String getLatestVersion(ModPackConfig config) {
-        try {
-            List<String> properties = new ArrayList<>(Arrays.asList("Accept", API_HEADER));
-            if (config.getPlaceholders().containsKey("token")) {
-                Collections.addAll(properties, "Authorization", "token " + config.getPlaceholders().get("token"));
-            } else if (config.getPlaceholders().containsKey("username") && config.getPlaceholders().containsKey("password")) {
-                String userPass = config.getPlaceholders().get("username") + ":" + config.getPlaceholders().get("password");
-                Collections.addAll(properties, "Authorization", "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes()));
+        ReleaseIndex index = getReleaseIndex(config);
+        if (index != null) {
+            ReleaseIndex.Release release = index.getLatest(DOWNLOADABLE);
+            if (release != null) {
+                return release.getTag();
             }
-            String s = launcher.query(new URL(new Replacer().replace(config.getPlaceholders("repository")).replaceIn(RELEASES_URL)), properties.toArray(new String[0]));
-            if (s != null) {
-                try {
-                    JsonElement json = new JsonParser().parse(s);
-                    if (json.isJsonArray() && ((JsonArray) json).size() > 0) {
-                        for (JsonElement release : ((JsonArray) json)) {
-                            if (release.isJsonObject()
-                                    && ((JsonObject) release).has("tag_name")
-                                    && ((JsonObject) release).has("assets")
-                                    && ((JsonObject) release).get("assets").isJsonArray()) {
-                                for (JsonElement asset : ((JsonObject) release).getAsJsonArray("assets")) {
-                                    if (asset.isJsonObject()
-                                            && ((JsonObject) asset).has("content_type")) {
-                                        return ((JsonObject) release).get("tag_name").getAsString();
-                                    }
-                                }
-                            }
-                        }
+        }
+        return null;
+    }
+
+    @Override
+    public UpdateAsset getUpdateAsset(ModPackConfig config, String gameVersion) {
+        ReleaseIndex index = getReleaseIndex(config);
+        if (index != null) {
+            for (ReleaseIndex.Release release : index) {
+                ReleaseIndex.Asset asset = release.getAsset(DOWNLOADABLE, gameVersion);
+                if (asset != null) {
+                    try {
+                        return new UpdateAsset(release.getTag(), asset.getName(), new URL(asset.getUrl()), getRequestProperties(config, API_HEADER, "application/octet-stream"));
+                    } catch (MalformedURLException e) {
+                        launcher.log(Level.SEVERE, asset.getUrl() + " is not a valid URL for update " + release.getTag() + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
                     }
-                } catch (JsonParseException e) {
-                    launcher.log(Level.SEVERE, "Invalid Json returned when getting latest version for " + config.getName() + " from source " + getName() + ": " + s + ". Error: " + e.getMessage());
+                } else {
+                    launcher.log(Level.SEVERE, "Unable to find downloadable file for update " + release.getTag() + " of " + config.getName() + " from source " + getName() + "!");
                 }
             }
+        }
+        return null;
+    }
+
+    private ReleaseIndex getReleaseIndex(ModPackConfig config) {
+        try {
+            URL url = new URL(new Replacer().replace(config.getPlaceholders("repository")).replaceIn(RELEASES_URL));
+            return getReleaseIndex(config, url, getRequestProperties(config, API_HEADER), GitHubSource::parseRelease);
         } catch (MalformedURLException e) {
             launcher.log(Level.SEVERE, "Invalid URL for getting latest version for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
         }
         return null;
     }
 
-    @Override
-    public File downloadUpdate(ModPackConfig config, String gameVersion) {
-        try {
-            List<String> properties = new ArrayList<>(Arrays.asList("Accept", API_HEADER));
-            if (config.getPlaceholders().containsKey("token")) {
-                Collections.addAll(properties, "Authorization", "token " + config.getPlaceholders().get("token"));
-            } else if (config.getPlaceholders().containsKey("username") && config.getPlaceholders().containsKey("password")) {
-                String userPass = config.getPlaceholders().get("username") + ":" + config.getPlaceholders().get("password");
-                Collections.addAll(properties, "Authorization", "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes()));
-            }
-            String s = launcher.query(new URL(new Replacer().replace(config.getPlaceholders("repository")).replaceIn(RELEASES_URL)), properties.toArray(new String[0]));
-            if (s != null) {
-                try {
-                    JsonElement json = JsonParser.parseString(s);
-                    if (json.isJsonArray() && ((JsonArray) json).size() > 0) {
-                        for (JsonElement release : ((JsonArray) json)) {
-                            if (release.isJsonObject()
-                                    && ((JsonObject) release).has("tag_name")
-                                    && ((JsonObject) release).has("assets")
-                                    && ((JsonObject) release).get("assets").isJsonArray()) {
-                                String fileName = null;
-                                URL source = null;
-                                String version = ((JsonObject) release).get("tag_name").getAsString();
-
-                                for (JsonElement asset : ((JsonArray) ((JsonObject) release).get("assets"))) {
-                                    if (asset.isJsonObject()
-                                            && ((JsonObject) asset).has("browser_download_url")
-                                            && ((JsonObject) asset).has("content_type")
-                                            && ((JsonObject) asset).has("name")) {
-                                        String contentType = ((JsonObject) asset).get("content_type").getAsString();
-                                        if (ContentType.ZIP.matches(contentType) || ContentType.DLL.matches(contentType)) {
-                                            try {
-                                                fileName = ((JsonObject) asset).get("name").getAsString();
-                                                source = new URL(((JsonObject) asset).get("browser_download_url").getAsString());
-                                                if (gameVersion == null || fileName.contains(gameVersion)) {
-                                                    break;
-                                                }
-                                            } catch (MalformedURLException e) {
-                                                launcher.log(Level.SEVERE, ((JsonObject) asset).get("browser_download_url").getAsString() + " is not a valid URL for update " + version + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
-                                            }
-                                        }
-                                    }
-                                }
-
-                                if (fileName != null && source != null) {
-
-                                    File target = new File(launcher.getTempFolder(), fileName);
-
-                                    try {
-                                        HttpURLConnection con = (HttpURLConnection) source.openConnection();
-                                        con.setRequestProperty("User-Agent", launcher.getUserAgent());
-                                        con.addRequestProperty("Accept", API_HEADER);
-                                        con.addRequestProperty("Accept", "application/octet-stream");
-                                        if (config.getPlaceholders().containsKey("token")) {
-                                            con.addRequestProperty("Authorization", "token " + config.getPlaceholders().get("token"));
-                                        } else if (config.getPlaceholders().containsKey("username") && config.getPlaceholders().containsKey("password")) {
-                                            String userPass = config.getPlaceholders().get("username") + ":" + config.getPlaceholders().get("password");
-                                            con.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes()));
-                                        }
-                                        con.setUseCaches(false);
-                                        con.connect();
-                                        try (InputStream in = con.getInputStream()) {
-                                            if (Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING) > 0) {
-                                                return target;
-                                            }
-                                        }
-                                    } catch (IOException e) {
-                                        launcher.log(Level.SEVERE, "Error while trying to download update " + version + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
-                                    }
-                                } else {
-                                    launcher.log(Level.SEVERE, "Unable to find downloadable file for update " + version + " of " + config.getName() + " from source " + getName() + "!");
-                                }
+    static ReleaseIndex.Release parseRelease(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String tag = null;
+        String publishedAt = null;
+        List<ReleaseIndex.Asset> assets = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "tag_name":
+                    tag = ReleaseIndex.nextString(reader);
+                    break;
+                case "published_at":
+                    publishedAt = ReleaseIndex.nextString(reader);
+                    break;
+                case "assets":
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        assets = new ArrayList<>();
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            ReleaseIndex.Asset asset = parseAsset(reader);
+                            if (asset != null) {
+                                assets.add(asset);
                             }
                         }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
                     }
-                } catch (JsonParseException e) {
-                    launcher.log(Level.SEVERE, "Invalid Json returned when getting latest version for " + config.getName() + " from source " + getName() + ": " + s + ". Error: " + e.getMessage());
-                }
+                    break;
+                default:
+                    // body, author, reactions etc. aren't needed
+                    reader.skipValue();
             }
-        } catch (MalformedURLException e) {
-            launcher.log(Level.SEVERE, "Invalid URL for getting latest version for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
         }
-        return null;
+        reader.endObject();
+        return tag != null && assets != null ? new ReleaseIndex.Release(tag, publishedAt, assets) : null;
+    }
+
+    private static ReleaseIndex.Asset parseAsset(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String name = null;
+        long size = -1;
+        String contentType = null;
+        String url = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = ReleaseIndex.nextString(reader);
+                    break;
+                case "size":
+                    size = ReleaseIndex.nextLong(reader, -1);
+                    break;
+                case "content_type":
+                    contentType = ReleaseIndex.nextString(reader);
+                    break;
+                case "browser_download_url":
+                    url = ReleaseIndex.nextString(reader);
+                    break;
+                default:
+                    // uploader, download_count etc. aren't needed
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return name != null && url != null ? new ReleaseIndex.Asset(name, size, contentType, url) : null;
+    }
+
+    private String[] getRequestProperties(ModPackConfig config, String... accept) {
+        List<String> properties = new ArrayList<>();
+        for (String type : accept) {
+            Collections.addAll(properties, "Accept", type);
+        }
+        if (config.getPlaceholders().containsKey("token")) {
+            Collections.addAll(properties, "Authorization", "token " + config.getPlaceholders().get("token"));
+        } else if (config.getPlaceholders().containsKey("username") && config.getPlaceholders().containsKey("password")) {
+            String userPass = config.getPlaceholders().get("username") + ":" + config.getPlaceholders().get("password");
+            Collections.addAll(properties, "Authorization", "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes()));
+        }
+        return properties.toArray(new String[0]);
     }
 
     @Override
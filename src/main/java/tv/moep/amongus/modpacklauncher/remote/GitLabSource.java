@@ -18,25 +18,19 @@ package tv.moep.amongus.modpacklauncher.remote;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import de.themoep.minedown.adventure.Replacer;
 import tv.moep.amongus.modpacklauncher.ModPackConfig;
 import tv.moep.amongus.modpacklauncher.ModPackLauncher;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 public class GitLabSource extends ModPackSource {
@@ -47,6 +41,7 @@ public class GitLabSource extends ModPackSource {
     private static final String RELEASES_URL = "%apiurl%projects/%user%%2F%repository%/releases";
     private static final String UPDATE_URL = "%url%/%user%/%repository%/-/releases/%version%";
     private static final String INFO_URL = "%url%/%user%/%repository%/";
+    private static final Predicate<ReleaseIndex.Asset> DOWNLOADABLE = asset -> asset.getName().endsWith(".zip") || asset.getUrl().endsWith(".zip");
 
     public GitLabSource(ModPackLauncher launcher) {
         super(launcher, REQUIRED_PLACEHOLDERS);
@@ -54,114 +49,124 @@ public class GitLabSource extends ModPackSource {
 
     @Override
     public String getLatestVersion(ModPackConfig config) {
-        try {
-            Replacer replacer = new Replacer().replace("apiurl", API_URL).replace("url", URL).replace(config.getPlaceholders("repository"));
-            String[] properties = new String[0];
-            if (config.getPlaceholders().containsKey("token")) {
-                properties = new String[] {"Private-Token", config.getPlaceholders().get("token")};
+        ReleaseIndex index = getReleaseIndex(config);
+        if (index != null) {
+            ReleaseIndex.Release release = index.getLatest(DOWNLOADABLE);
+            if (release != null) {
+                return release.getTag();
             }
-            String s = launcher.query(new URL(replacer.replaceIn(RELEASES_URL)), properties);
-            if (s != null) {
-                try {
-                    JsonElement json = new JsonParser().parse(s);
-                    if (json.isJsonArray() && ((JsonArray) json).size() > 0) {
-                        for (JsonElement release : ((JsonArray) json)) {
-                            if (release.isJsonObject()
-                                    && ((JsonObject) release).has("tag_name")
-                                    && ((JsonObject) release).has("assets")
-                                    && ((JsonObject) release).get("assets").isJsonObject()) {
-                                JsonObject assets = ((JsonObject) release).getAsJsonObject("assets");
-                                if (assets.has("links") && assets.get("links").isJsonArray()) {
-                                    for (JsonElement asset : assets.getAsJsonArray("links")) {
-                                        if (asset.isJsonObject()
-                                                && (((JsonObject) asset).get("name").getAsString().endsWith(".jar")
-                                                        || ((JsonObject) asset).get("url").getAsString().endsWith(".jar"))) {
-                                            return ((JsonObject) release).get("tag_name").getAsString();
-                                        }
-                                    }
-                                }
-                            }
-                        }
+        }
+        return null;
+    }
+
+    @Override
+    public UpdateAsset getUpdateAsset(ModPackConfig config, String gameVersion) {
+        ReleaseIndex index = getReleaseIndex(config);
+        if (index != null) {
+            for (ReleaseIndex.Release release : index) {
+                ReleaseIndex.Asset asset = release.getAsset(DOWNLOADABLE, gameVersion);
+                if (asset != null) {
+                    try {
+                        return new UpdateAsset(release.getTag(), asset.getName(), new URL(asset.getUrl()), getRequestProperties(config));
+                    } catch (MalformedURLException e) {
+                        launcher.log(Level.SEVERE, asset.getUrl() + " is not a valid URL for update " + release.getTag() + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
                     }
-                } catch (JsonParseException e) {
-                    launcher.log(Level.SEVERE, "Invalid Json returned when getting latest version for " + config.getName() + " from source " + getName() + ": " + s + ". Error: " + e.getMessage());
                 }
             }
+        }
+        return null;
+    }
+
+    private ReleaseIndex getReleaseIndex(ModPackConfig config) {
+        try {
+            Replacer replacer = new Replacer().replace("apiurl", API_URL).replace("url", URL).replace(config.getPlaceholders("repository"));
+            return getReleaseIndex(config, new URL(replacer.replaceIn(RELEASES_URL)), getRequestProperties(config), GitLabSource::parseRelease);
         } catch (MalformedURLException e) {
             launcher.log(Level.SEVERE, "Invalid URL for getting latest version for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
         }
         return null;
     }
 
-    @Override
-    public File downloadUpdate(ModPackConfig config, String gameVersion) {
-        try {
-            Replacer replacer = new Replacer().replace("apiurl", API_URL).replace(config.getPlaceholders("repository"));
-            String s = launcher.query(new URL(replacer.replaceIn(RELEASES_URL)), "Accept", "application/vnd.github.v3+json");
-            if (s != null) {
-                try {
-                    JsonElement json = JsonParser.parseString(s);
-                    if (json.isJsonArray() && ((JsonArray) json).size() > 0) {
-                        for (JsonElement release : ((JsonArray) json)) {
-                            if (release.isJsonObject()
-                                    && ((JsonObject) release).has("tag_name")
-                                    && ((JsonObject) release).has("assets")
-                                    && ((JsonObject) release).get("assets").isJsonObject()) {
-                                JsonObject assets = ((JsonObject) release).getAsJsonObject("assets");
-                                if (assets.has("links") && assets.get("links").isJsonArray()) {
-                                    String fileName = null;
-                                    URL source = null;
-                                    String version = ((JsonObject) release).get("tag_name").getAsString();
-                                    for (JsonElement asset : assets.getAsJsonArray("links")) {
-                                        if (asset.isJsonObject()
-                                                && (((JsonObject) asset).get("name").getAsString().endsWith(".zip")
-                                                        || ((JsonObject) asset).get("url").getAsString().endsWith(".zip"))) {
-
-                                            try {
-                                                fileName = ((JsonObject) asset).get("name").getAsString();
-                                                source = new URL(((JsonObject) asset).get("url").getAsString());
-                                                if (gameVersion == null || fileName.contains(gameVersion)) {
-                                                    break;
-                                                }
-                                            } catch (MalformedURLException e) {
-                                                launcher.log(Level.SEVERE, ((JsonObject) asset).get("url").getAsString() + " is not a valid URL for update " + version + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
-                                            }
-                                        }
-                                    }
+    private String[] getRequestProperties(ModPackConfig config) {
+        if (config.getPlaceholders().containsKey("token")) {
+            return new String[] {"Private-Token", config.getPlaceholders().get("token")};
+        }
+        return new String[0];
+    }
 
-                                    if (fileName != null && source != null) {
-                                        File target = new File(launcher.getTempFolder(), fileName);
-
-                                        try {
-                                            HttpURLConnection con = (HttpURLConnection) source.openConnection();
-                                            con.setRequestProperty("User-Agent", launcher.getUserAgent());
-                                            if (config.getPlaceholders().containsKey("token")) {
-                                                con.setRequestProperty("Private-Token", config.getPlaceholders().get("token"));
-                                            }
-                                            con.setUseCaches(false);
-                                            con.connect();
-                                            try (InputStream in = con.getInputStream()) {
-                                                if (Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING) > 0) {
-                                                    return target;
-                                                }
-                                            }
-                                        } catch (IOException e) {
-                                            launcher.log(Level.SEVERE, "Error while trying to download update "
-                                                    + version + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
-                                        }
+    static ReleaseIndex.Release parseRelease(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String tag = null;
+        String releasedAt = null;
+        List<ReleaseIndex.Asset> assets = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "tag_name":
+                    tag = ReleaseIndex.nextString(reader);
+                    break;
+                case "released_at":
+                    releasedAt = ReleaseIndex.nextString(reader);
+                    break;
+                case "assets":
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        assets = new ArrayList<>();
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("links") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                                reader.beginArray();
+                                while (reader.hasNext()) {
+                                    ReleaseIndex.Asset asset = parseLink(reader);
+                                    if (asset != null) {
+                                        assets.add(asset);
                                     }
                                 }
+                                reader.endArray();
+                            } else {
+                                // sources, evidences etc. aren't needed
+                                reader.skipValue();
                             }
                         }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
                     }
-                } catch(JsonParseException e) {
-                    launcher.log(Level.SEVERE, "Invalid Json returned when getting latest version for " + config.getName() + " from source " + getName() + ": " + s + ". Error: " + e.getMessage());
-                }
+                    break;
+                default:
+                    // description, author, commit etc. aren't needed
+                    reader.skipValue();
             }
-        } catch(MalformedURLException e){
-            launcher.log(Level.SEVERE, "Invalid URL for getting latest version for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
         }
-        return null;
+        reader.endObject();
+        return tag != null && assets != null ? new ReleaseIndex.Release(tag, releasedAt, assets) : null;
+    }
+
+    private static ReleaseIndex.Asset parseLink(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String name = null;
+        String url = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = ReleaseIndex.nextString(reader);
+                    break;
+                case "url":
+                    url = ReleaseIndex.nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        // GitLab doesn't provide the size or content type of release links
+        return name != null && url != null ? new ReleaseIndex.Asset(name, -1, null, url) : null;
     }
 
     @Override
@@ -172,7 +177,7 @@ public class GitLabSource extends ModPackSource {
 
     @Override
     public String getInfoUrl(ModPackConfig config) {
-        return new Replacer().replace(config.getPlaceholders("repository")).replaceIn(INFO_URL);
+        return new Replacer().replace("url", URL).replace(config.getPlaceholders("repository")).replaceIn(INFO_URL);
     }
 
     @Override
@@ -0,0 +1,140 @@
+package tv.moep.amongus.modpacklauncher.remote;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+import tv.moep.amongus.modpacklauncher.io.Hashes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Persistent cache for query responses which stores the validators (ETag and Last-Modified)
+ * of a response so that it can be revalidated with a conditional request.
+ */
+public class HttpCache {
+    private final ModPackLauncher launcher;
+    private final Path folder;
+
+    public HttpCache(ModPackLauncher launcher, Path folder) {
+        this.launcher = launcher;
+        this.folder = folder;
+    }
+
+    private String getKey(URL url, String... properties) {
+        // Different credentials might see different responses
+        return Hashes.sha256(url + "\n" + String.join("\n", properties));
+    }
+
+    /**
+     * Get a cached response
+     * @param url The url that was queried
+     * @param properties The request properties that were sent
+     * @return The cached response or <code>null</code> if there is none
+     */
+    public Entry get(URL url, String... properties) {
+        String key = getKey(url, properties);
+        Path metaFile = folder.resolve(key + ".properties");
+        Path bodyFile = folder.resolve(key + ".body");
+        if (!Files.exists(metaFile) || !Files.exists(bodyFile)) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaFile)) {
+            meta.load(in);
+            return new Entry(
+                    Files.readAllBytes(bodyFile),
+                    meta.getProperty("etag"),
+                    meta.getProperty("last-modified")
+            );
+        } catch (IOException e) {
+            launcher.log(Level.WARNING, "Unable to read cached response for " + url + "! " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Store a response if it has a validator
+     * @param url The url that was queried
+     * @param properties The request properties that were sent
+     * @param entry The response to store
+     */
+    public void put(URL url, String[] properties, Entry entry) {
+        if (!entry.hasValidator()) {
+            return;
+        }
+        String key = getKey(url, properties);
+        Properties meta = new Properties();
+        meta.setProperty("url", url.toString());
+        if (entry.getETag() != null) {
+            meta.setProperty("etag", entry.getETag());
+        }
+        if (entry.getLastModified() != null) {
+            meta.setProperty("last-modified", entry.getLastModified());
+        }
+        try {
+            Files.createDirectories(folder);
+            Path bodyTemp = folder.resolve(key + ".body.tmp");
+            Files.write(bodyTemp, entry.getBody());
+            Files.move(bodyTemp, folder.resolve(key + ".body"), StandardCopyOption.REPLACE_EXISTING);
+            Path metaTemp = folder.resolve(key + ".properties.tmp");
+            try (OutputStream out = Files.newOutputStream(metaTemp)) {
+                meta.store(out, null);
+            }
+            Files.move(metaTemp, folder.resolve(key + ".properties"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            launcher.log(Level.WARNING, "Unable to cache response for " + url + "! " + e.getMessage());
+        }
+    }
+
+    public static class Entry {
+        private final byte[] body;
+        private final String eTag;
+        private final String lastModified;
+
+        public Entry(byte[] body, String eTag, String lastModified) {
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public boolean hasValidator() {
+            return eTag != null || lastModified != null;
+        }
+    }
+}
@@ -34,6 +34,11 @@ public class ManualSource extends DirectSource {
         return "unknown";
     }
 
+    @Override
+    public boolean isCacheable(UpdateAsset asset) {
+        return false;
+    }
+
     @Override
     public SourceType getType() {
         return SourceType.MANUAL;
@@ -20,13 +20,22 @@ package tv.moep.amongus.modpacklauncher.remote;
 
 import tv.moep.amongus.modpacklauncher.ModPackConfig;
 import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+import tv.moep.amongus.modpacklauncher.metrics.Metrics;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 public abstract class ModPackSource {
     protected final ModPackLauncher launcher;
     private final Collection<String> requiredPlaceholders;
+    private final Map<String, ReleaseIndex> releaseIndices = new ConcurrentHashMap<>();
 
     public ModPackSource(ModPackLauncher launcher, Collection<String> requiredPlaceholders) {
         this.launcher = launcher;
@@ -48,13 +57,128 @@ public abstract class ModPackSource {
      */
     public abstract String getLatestVersion(ModPackConfig config);
 
+    /**
+     * Get the latest version of a plugin without blocking, runs on the executor of the launcher.
+     * @param config The mod pack config
+     * @return A future completed with the latest version string or <code>null</code> if not found or an error occured
+     */
+    public CompletableFuture<String> getLatestVersionAsync(ModPackConfig config) {
+        return CompletableFuture.supplyAsync(() -> getLatestVersion(config), launcher.getExecutor());
+    }
+
+    /**
+     * Get the file of the latest version that should be downloaded
+     * @param config The mod pack config
+     * @param gameVersion The version of the game to get the files for if multiple are included
+     * @return The asset to download or <code>null</code> if not found or an error occured
+     */
+    public abstract UpdateAsset getUpdateAsset(ModPackConfig config, String gameVersion);
+
     /**
      * Download the latest version of a plugin into the target folder specified by the Updater.
      * @param config The mod pack config
      * @param gameVersion The version of the game to get the files for if multiple are included
      * @return A reference to the newly downloaded file or <code>null</code> if not found
      */
-    public abstract File downloadUpdate(ModPackConfig config, String gameVersion);
+    public File downloadUpdate(ModPackConfig config, String gameVersion) {
+        UpdateAsset asset = getUpdateAsset(config, gameVersion);
+        if (asset != null) {
+            return download(config, asset);
+        }
+        return null;
+    }
+
+    /**
+     * Download the latest version of a plugin without blocking, runs on the executor of the launcher.
+     * @param config The mod pack config
+     * @param gameVersion The version of the game to get the files for if multiple are included
+     * @return A future completed with the newly downloaded file or <code>null</code> if not found
+     */
+    public CompletableFuture<File> downloadUpdateAsync(ModPackConfig config, String gameVersion) {
+        return CompletableFuture.supplyAsync(() -> downloadUpdate(config, gameVersion), launcher.getExecutor());
+    }
+
+    /**
+     * Download an asset, cacheable assets are taken from and stored in the asset cache of the launcher.
+     * The file has to be passed to {@link ModPackLauncher#releaseDownload} once it was used.
+     * @param config The mod pack config
+     * @param asset The asset to download
+     * @return A reference to the downloaded file or <code>null</code> if an error occured
+     */
+    public File download(ModPackConfig config, UpdateAsset asset) {
+        File cached = getCached(asset);
+        if (cached != null) {
+            launcher.log(Level.INFO, "Using cached " + asset.getFileName() + " " + asset.getVersion() + " for " + config.getName());
+            return cached;
+        }
+        try (Metrics.Sample sample = launcher.getMetrics().start("downloadUpdate." + getName())) {
+            boolean cacheable = isCacheable(asset);
+            // Cached assets use a stable location so that an interrupted download can be resumed later,
+            // other ones get their own file as parallel installs might download assets with the same name
+            Path target = cacheable ? launcher.getAssetCache().getPartialFile(getName(), asset) : launcher.createDownloadFile(asset.getFileName());
+            boolean done = false;
+            try {
+                long downloaded = launcher.getDownloader().download(asset, target);
+                if (downloaded > 0) {
+                    sample.success(downloaded);
+                    done = true;
+                    return cacheable ? launcher.getAssetCache().put(getName(), asset, target.toFile()) : target.toFile();
+                }
+            } finally {
+                if (!done && !cacheable) {
+                    launcher.releaseDownload(target.toFile());
+                }
+            }
+        } catch (IOException e) {
+            launcher.log(Level.SEVERE, "Error while trying to download update " + asset.getVersion() + " for " + config.getName() + " from source " + getName() + "! " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Get an asset from the asset cache of the launcher, it has to be passed to
+     * {@link ModPackLauncher#releaseDownload} once it was used
+     * @param asset The asset
+     * @return The cached file or <code>null</code> if it isn't cached or not cacheable
+     */
+    public File getCached(UpdateAsset asset) {
+        if (isCacheable(asset)) {
+            return launcher.getAssetCache().get(getName(), asset);
+        }
+        return null;
+    }
+
+    /**
+     * Check whether an asset of this source may be cached. Sources whose versions don't identify
+     * the content of an asset shouldn't be cached.
+     * @param asset The asset
+     * @return Whether or not the asset can be cached
+     */
+    public boolean isCacheable(UpdateAsset asset) {
+        return asset.getVersion() != null;
+    }
+
+    /**
+     * Get the release index of a repository. The index is only created again when the query
+     * response changed so all lookups between two refreshes share the same parsed releases.
+     * @param config The mod pack config
+     * @param url The url to query the releases from
+     * @param properties The request properties to send
+     * @param parser The parser for the response
+     * @return The release index or <code>null</code> if the query failed
+     */
+    protected ReleaseIndex getReleaseIndex(ModPackConfig config, URL url, String[] properties, ReleaseIndex.Parser parser) {
+        byte[] response = launcher.queryBytes(url, properties);
+        if (response == null) {
+            return null;
+        }
+        ReleaseIndex index = releaseIndices.get(url.toString());
+        if (index == null || !index.isParsedFrom(response)) {
+            index = new ReleaseIndex(response, parser, e -> launcher.log(Level.SEVERE, "Invalid Json returned when getting releases for " + config.getName() + " from source " + getName() + ": " + e.getMessage()));
+            releaseIndices.put(url.toString(), index);
+        }
+        return index;
+    }
 
     /**
      * Get the URL where to download updates from manually
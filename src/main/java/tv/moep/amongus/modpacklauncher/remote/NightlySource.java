@@ -37,6 +37,11 @@ public class NightlySource extends DirectSource {
         return "nightly";
     }
 
+    @Override
+    public boolean isCacheable(UpdateAsset asset) {
+        return false;
+    }
+
     @Override
     public SourceType getType() {
         return SourceType.NIGHTLY;
@@ -0,0 +1,432 @@
+package tv.moep.amongus.modpacklauncher.remote;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import tv.moep.amongus.modpacklauncher.ModPackLauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Downloads assets with multiple parallel range requests into a preallocated file. The progress
+ * of every segment is stored in a sidecar state file next to the target so that interrupted
+ * downloads can be resumed, as long as the server sends an ETag or Last-Modified header to check
+ * that the file didn't change. Servers without range support get a single plain request.
+ */
+public class RangedDownloader {
+    private static final int CONNECT_TIMEOUT = 15 * 1000;
+    private static final int READ_TIMEOUT = 30 * 1000;
+    private static final long STATE_SAVE_INTERVAL = 1000;
+
+    private final ModPackLauncher launcher;
+    private final int maxSegments;
+    private final long minSegmentSize;
+    private final int retries;
+
+    /**
+     * Create a new downloader
+     * @param launcher The launcher
+     * @param maxSegments The maximum amount of parallel connections per download
+     * @param minSegmentSize The minimum size of one segment in bytes
+     * @param retries How often a failed request is retried before giving up
+     */
+    public RangedDownloader(ModPackLauncher launcher, int maxSegments, long minSegmentSize, int retries) {
+        this.launcher = launcher;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.minSegmentSize = minSegmentSize;
+        this.retries = retries;
+    }
+
+    /**
+     * Download an asset into a file, resuming a previous download to the same file if possible
+     * @param asset The asset to download
+     * @param target The file to download to
+     * @return The amount of bytes of the file
+     * @throws IOException If the download failed after all retries
+     */
+    public long download(UpdateAsset asset, Path target) throws IOException {
+        Path stateFile = target.resolveSibling(target.getFileName() + ".state");
+        Probe probe = probe(asset);
+        long length = probe.length;
+        String validator = probe.validator;
+
+        if (!probe.ranges || length <= 0) {
+            Files.deleteIfExists(stateFile);
+            return downloadPlain(asset, target);
+        }
+
+        // Without a validator a changed file can't be detected with If-Range, resuming could mix two versions
+        State state = validator != null ? State.load(stateFile, asset, length, validator) : null;
+        if (state == null || !Files.exists(target)) {
+            state = new State(stateFile, asset, length, validator, (int) Math.max(1, Math.min(maxSegments, length / minSegmentSize)));
+            try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+                file.setLength(length);
+            }
+        } else {
+            launcher.log(Level.INFO, "Resuming download of " + asset.getFileName() + " at " + state.getDone() + "/" + length + " bytes");
+        }
+        state.save();
+
+        ExecutorService executor = Executors.newFixedThreadPool(state.segments.length, r -> {
+            Thread thread = new Thread(r, "Download " + asset.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            state.channel = channel;
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Segment segment : state.segments) {
+                    if (!segment.isDone()) {
+                        State finalState = state;
+                        futures.add(executor.submit(() -> {
+                            downloadSegment(asset, channel, finalState, segment);
+                            return null;
+                        }));
+                    }
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                // Saved while the channel is still open so that the written data can be forced first
+                state.save();
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Error while downloading " + asset.getFileName(), e.getCause());
+            } catch (InterruptedException e) {
+                state.save();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + asset.getFileName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Files.deleteIfExists(stateFile);
+        return length;
+    }
+
+    /**
+     * Find out the length of an asset and whether the server supports range requests. Servers that
+     * don't answer HEAD requests or don't advertise range support get a request for the first byte.
+     * @param asset The asset
+     * @return The result of the probe
+     * @throws IOException If the server didn't answer successfully after all retries
+     */
+    private Probe probe(UpdateAsset asset) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                HttpURLConnection head = openConnection(asset);
+                head.setRequestMethod("HEAD");
+                try {
+                    int code = head.getResponseCode();
+                    if (code / 100 == 2 && "bytes".equalsIgnoreCase(head.getHeaderField("Accept-Ranges")) && head.getContentLengthLong() > 0) {
+                        return new Probe(head.getContentLengthLong(), getValidator(head), true);
+                    }
+                } finally {
+                    head.disconnect();
+                }
+
+                HttpURLConnection get = openConnection(asset);
+                get.setRequestProperty("Range", "bytes=0-0");
+                try {
+                    int code = get.getResponseCode();
+                    if (code == HttpURLConnection.HTTP_PARTIAL) {
+                        // Content-Range: bytes 0-0/<length>, the length can be * if it is unknown
+                        String range = get.getHeaderField("Content-Range");
+                        long length = -1;
+                        if (range != null && range.lastIndexOf('/') > -1) {
+                            try {
+                                length = Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+                            } catch (NumberFormatException ignored) {
+                                // Unknown length, downloaded with a plain request
+                            }
+                        }
+                        return new Probe(length, getValidator(get), length > 0);
+                    } else if (code / 100 == 2) {
+                        return new Probe(get.getContentLengthLong(), getValidator(get), false);
+                    }
+                    throw new IOException("Server responded with " + code + " to the probe of " + asset.getFileName());
+                } finally {
+                    get.disconnect();
+                }
+            } catch (IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                long backoff = 1000L << attempt;
+                launcher.log(Level.WARNING, "Error while probing " + asset.getFileName() + ", retrying in " + backoff + "ms! " + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while downloading " + asset.getFileName());
+                }
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection(UpdateAsset asset) throws IOException {
+        HttpURLConnection con = asset.openConnection(launcher.getUserAgent());
+        con.setConnectTimeout(CONNECT_TIMEOUT);
+        con.setReadTimeout(READ_TIMEOUT);
+        return con;
+    }
+
+    private static String getValidator(HttpURLConnection con) {
+        return con.getHeaderField("ETag") != null ? con.getHeaderField("ETag") : con.getHeaderField("Last-Modified");
+    }
+
+    private void downloadSegment(UpdateAsset asset, FileChannel channel, State state, Segment segment) throws IOException, InterruptedException {
+        byte[] buffer = new byte[64 * 1024];
+        for (int attempt = 0; ; attempt++) {
+            try {
+                HttpURLConnection con = asset.openConnection(launcher.getUserAgent());
+                con.setConnectTimeout(CONNECT_TIMEOUT);
+                con.setReadTimeout(READ_TIMEOUT);
+                con.setRequestProperty("Range", "bytes=" + (segment.start + segment.done) + "-" + segment.end);
+                if (state.validator != null) {
+                    con.setRequestProperty("If-Range", state.validator);
+                }
+                con.connect();
+                if (con.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                    // The file changed or the server ignored the range, retrying won't help
+                    state.delete();
+                    throw new IOException("Server responded with " + con.getResponseCode() + " instead of partial content for " + asset.getFileName());
+                }
+                try (InputStream in = con.getInputStream()) {
+                    int r;
+                    while (!segment.isDone() && (r = in.read(buffer, 0, (int) Math.min(buffer.length, segment.getRemaining()))) != -1) {
+                        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, r);
+                        while (bytes.hasRemaining()) {
+                            channel.write(bytes, segment.start + segment.done + (r - bytes.remaining()));
+                        }
+                        segment.done += r;
+                        state.saveIfDue();
+                    }
+                }
+                if (!segment.isDone()) {
+                    throw new IOException("Connection closed after " + segment.done + " of " + (segment.end - segment.start + 1) + " bytes");
+                }
+                return;
+            } catch (IOException e) {
+                if (attempt >= retries || !state.exists()) {
+                    throw e;
+                }
+                long backoff = 1000L << attempt;
+                launcher.log(Level.WARNING, "Error while downloading segment " + segment.start + "-" + segment.end + " of " + asset.getFileName() + ", retrying in " + backoff + "ms! " + e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    private long downloadPlain(UpdateAsset asset, Path target) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                HttpURLConnection con = asset.openConnection(launcher.getUserAgent());
+                con.setConnectTimeout(CONNECT_TIMEOUT);
+                con.setReadTimeout(READ_TIMEOUT);
+                con.connect();
+                try (InputStream in = con.getInputStream()) {
+                    return Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                long backoff = 1000L << attempt;
+                launcher.log(Level.WARNING, "Error while downloading " + asset.getFileName() + ", retrying in " + backoff + "ms! " + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while downloading " + asset.getFileName());
+                }
+            }
+        }
+    }
+
+    private static class Probe {
+        private final long length;
+        private final String validator;
+        private final boolean ranges;
+
+        private Probe(long length, String validator, boolean ranges) {
+            this.length = length;
+            this.validator = validator;
+            this.ranges = ranges;
+        }
+    }
+
+    private static class State {
+        private final Path file;
+        private final String url;
+        private final long length;
+        private final String validator;
+        private final Segment[] segments;
+        private final AtomicLong lastSave = new AtomicLong(0);
+        private volatile FileChannel channel = null;
+
+        private State(Path file, UpdateAsset asset, long length, String validator, int segmentCount) {
+            this(file, asset.getUrl().toString(), length, validator, new Segment[segmentCount]);
+            long segmentSize = length / segmentCount;
+            for (int i = 0; i < segmentCount; i++) {
+                long start = i * segmentSize;
+                long end = i + 1 == segmentCount ? length - 1 : start + segmentSize - 1;
+                segments[i] = new Segment(start, end, 0);
+            }
+        }
+
+        private State(Path file, String url, long length, String validator, Segment[] segments) {
+            this.file = file;
+            this.url = url;
+            this.length = length;
+            this.validator = validator;
+            this.segments = segments;
+        }
+
+        private static State load(Path file, UpdateAsset asset, long length, String validator) {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+                if (!asset.getUrl().toString().equals(properties.getProperty("url"))
+                        || length != Long.parseLong(properties.getProperty("length"))
+                        || !validator.equals(properties.getProperty("validator"))) {
+                    return null;
+                }
+                Segment[] segments = new Segment[Integer.parseInt(properties.getProperty("segments"))];
+                for (int i = 0; i < segments.length; i++) {
+                    segments[i] = new Segment(
+                            Long.parseLong(properties.getProperty("segment." + i + ".start")),
+                            Long.parseLong(properties.getProperty("segment." + i + ".end")),
+                            Long.parseLong(properties.getProperty("segment." + i + ".done")));
+                }
+                return new State(file, properties.getProperty("url"), length, validator, segments);
+            } catch (IOException | NumberFormatException | NullPointerException e) {
+                return null;
+            }
+        }
+
+        private long getDone() {
+            long done = 0;
+            for (Segment segment : segments) {
+                done += segment.done;
+            }
+            return done;
+        }
+
+        private boolean exists() {
+            return Files.exists(file);
+        }
+
+        private void saveIfDue() throws IOException {
+            long last = lastSave.get();
+            long now = System.currentTimeMillis();
+            // Only the segment that wins the update saves, the others keep downloading
+            if (last >= 0 && last + STATE_SAVE_INTERVAL < now && lastSave.compareAndSet(last, now)) {
+                save();
+            }
+        }
+
+        /**
+         * Save the progress of the segments. The data they count as done is forced to the disk
+         * before so that the state never claims more than the file contains after a crash.
+         */
+        private synchronized void save() throws IOException {
+            if (lastSave.get() < 0) {
+                return;
+            }
+            lastSave.set(System.currentTimeMillis());
+            long[] done = new long[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                done[i] = segments[i].done;
+            }
+            FileChannel channel = this.channel;
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+            }
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            properties.setProperty("length", String.valueOf(length));
+            if (validator != null) {
+                properties.setProperty("validator", validator);
+            }
+            properties.setProperty("segments", String.valueOf(segments.length));
+            for (int i = 0; i < segments.length; i++) {
+                properties.setProperty("segment." + i + ".start", String.valueOf(segments[i].start));
+                properties.setProperty("segment." + i + ".end", String.valueOf(segments[i].end));
+                properties.setProperty("segment." + i + ".done", String.valueOf(done[i]));
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private synchronized void delete() throws IOException {
+            // Don't save it again after it was deleted
+            lastSave.set(-1);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static class Segment {
+        private final long start;
+        private final long end;
+        private volatile long done;
+
+        private Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        private long getRemaining() {
+            return end - start + 1 - done;
+        }
+
+        private boolean isDone() {
+            return getRemaining() <= 0;
+        }
+    }
+}
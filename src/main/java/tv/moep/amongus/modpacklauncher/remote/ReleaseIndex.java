@@ -0,0 +1,272 @@
+package tv.moep.amongus.modpacklauncher.remote;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The releases of a repository, read from a query response and shared by every lookup until the
+ * response changes. Releases are streamed from the response on demand, newest first, so lookups
+ * that are satisfied by the first releases never read the rest of a long release history.
+ */
+public class ReleaseIndex implements Iterable<ReleaseIndex.Release> {
+    private final byte[] response;
+    private final Parser parser;
+    private final Consumer<Exception> errorHandler;
+    private final List<Release> releases = new ArrayList<>();
+    private JsonReader reader;
+    private boolean started = false;
+
+    /**
+     * @param response The query response to read the releases from
+     * @param parser The parser for a single release
+     * @param errorHandler Handler for errors while reading the response, no more releases are read after an error
+     */
+    public ReleaseIndex(byte[] response, Parser parser, Consumer<Exception> errorHandler) {
+        this.response = response;
+        this.parser = parser;
+        this.errorHandler = errorHandler;
+        this.reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check whether this index was parsed from a certain response. The query cache returns the
+     * same instance until it refreshes so this is an identity check on purpose.
+     * @param response The response
+     * @return Whether or not this index is up to date with the response
+     */
+    public boolean isParsedFrom(byte[] response) {
+        return this.response == response;
+    }
+
+    /**
+     * Get a release, reading it from the response if it wasn't read yet
+     * @param index The index of the release, 0 is the newest one
+     * @return The release or <code>null</code> if there are not that many releases
+     */
+    public synchronized Release get(int index) {
+        while (releases.size() <= index && reader != null) {
+            try {
+                if (!started) {
+                    started = true;
+                    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        // Error messages are returned as objects
+                        close();
+                        break;
+                    }
+                    reader.beginArray();
+                }
+                if (reader.hasNext()) {
+                    Release release = parser.parse(reader);
+                    if (release != null) {
+                        releases.add(release);
+                    }
+                } else {
+                    close();
+                }
+            } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+                close();
+                errorHandler.accept(e);
+            }
+        }
+        return index < releases.size() ? releases.get(index) : null;
+    }
+
+    private void close() {
+        try {
+            reader.close();
+        } catch (IOException ignored) {}
+        reader = null;
+    }
+
+    @Override
+    public Iterator<Release> iterator() {
+        return new Iterator<Release>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return get(next) != null;
+            }
+
+            @Override
+            public Release next() {
+                Release release = get(next);
+                if (release == null) {
+                    throw new NoSuchElementException();
+                }
+                next++;
+                return release;
+            }
+        };
+    }
+
+    /**
+     * Get the newest release which has an asset matching a filter
+     * @param filter The filter for the assets
+     * @return The release or <code>null</code> if no release has a matching asset
+     */
+    public Release getLatest(Predicate<Asset> filter) {
+        for (Release release : this) {
+            if (release.getAsset(filter, null) != null) {
+                return release;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the next value as a string
+     * @param reader The reader
+     * @return The string or <code>null</code> if the value is not a string or number
+     * @throws IOException If the value could not be read
+     */
+    public static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    /**
+     * Read the next value as a long
+     * @param reader The reader
+     * @param def The default value if the value is not a number
+     * @return The long
+     * @throws IOException If the value could not be read
+     */
+    public static long nextLong(JsonReader reader, long def) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return reader.nextLong();
+        }
+        reader.skipValue();
+        return def;
+    }
+
+    public interface Parser {
+        /**
+         * Parse the next release from the releases array, fields that aren't needed should be skipped
+         * @param reader The reader positioned at the release value
+         * @return The release or <code>null</code> if the value is not a usable release
+         * @throws IOException If the value could not be read
+         */
+        Release parse(JsonReader reader) throws IOException;
+    }
+
+    public static class Release {
+        private final String tag;
+        private final String publishedAt;
+        private final List<Asset> assets;
+
+        /**
+         * @param tag The tag which is used as the version
+         * @param publishedAt The date the release was published at or <code>null</code> if unknown
+         * @param assets The downloadable files of the release
+         */
+        public Release(String tag, String publishedAt, List<Asset> assets) {
+            this.tag = tag;
+            this.publishedAt = publishedAt;
+            this.assets = Collections.unmodifiableList(assets);
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public String getPublishedAt() {
+            return publishedAt;
+        }
+
+        public List<Asset> getAssets() {
+            return assets;
+        }
+
+        /**
+         * Get the asset to download
+         * @param filter The filter for the assets
+         * @param gameVersion The version of the game that the file name should contain if multiple are included
+         * @return The first asset containing the game version, the last matching asset if none does
+         *         or <code>null</code> if no asset matches the filter
+         */
+        public Asset getAsset(Predicate<Asset> filter, String gameVersion) {
+            Asset found = null;
+            for (Asset asset : assets) {
+                if (filter.test(asset)) {
+                    found = asset;
+                    if (gameVersion == null || asset.getName().contains(gameVersion)) {
+                        break;
+                    }
+                }
+            }
+            return found;
+        }
+    }
+
+    public static class Asset {
+        private final String name;
+        private final long size;
+        private final String contentType;
+        private final String url;
+
+        /**
+         * @param name The file name
+         * @param size The size in bytes or -1 if unknown
+         * @param contentType The content type or <code>null</code> if unknown
+         * @param url The download url
+         */
+        public Asset(String name, long size, String contentType, String url) {
+            this.name = name;
+            this.size = size;
+            this.contentType = contentType;
+            this.url = url;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package tv.moep.amongus.modpacklauncher.remote;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+
+public class UpdateAsset {
+    private final String version;
+    private final String fileName;
+    private final URL url;
+    private final String[] properties;
+
+    /**
+     * A downloadable file of an update
+     * @param version The version of the update
+     * @param fileName The name of the file
+     * @param url The url to download the file from
+     * @param properties Request properties to send when downloading, alternating between key and value
+     */
+    public UpdateAsset(String version, String fileName, URL url, String... properties) {
+        this.version = version;
+        this.fileName = fileName;
+        this.url = url;
+        this.properties = properties;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public String[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Check whether this asset is a zip archive that can be extracted
+     * @return Whether or not the file name ends with .zip
+     */
+    public boolean isZip() {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    /**
+     * Open a connection to download this asset
+     * @param userAgent The user agent to send
+     * @return The connected connection
+     * @throws IOException If the connection could not be established
+     */
+    public HttpURLConnection connect(String userAgent) throws IOException {
+        HttpURLConnection con = openConnection(userAgent);
+        con.connect();
+        return con;
+    }
+
+    /**
+     * Open a connection to download this asset without connecting it yet so that more properties can be set
+     * @param userAgent The user agent to send
+     * @return The unconnected connection
+     * @throws IOException If the connection could not be opened
+     */
+    public HttpURLConnection openConnection(String userAgent) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestProperty("User-Agent", userAgent);
+        for (int i = 0; i + 1 < properties.length; i += 2) {
+            con.addRequestProperty(properties[i], properties[i + 1]);
+        }
+        con.setUseCaches(false);
+        return con;
+    }
+}
@@ -0,0 +1,59 @@
+package tv.moep.amongus.modpacklauncher.task;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.CancellationException;
+
+public interface TaskContext {
+
+    /**
+     * A context for work that isn't running as a task, ignores progress and is never cancelled
+     */
+    TaskContext NONE = new TaskContext() {
+        @Override
+        public void progress(String message) {}
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Report the current progress of the work
+     * @param message The progress message to display
+     */
+    void progress(String message);
+
+    /**
+     * Check whether the work was cancelled
+     * @return Whether or not the work should stop
+     */
+    boolean isCancelled();
+
+    /**
+     * Stop the work if it was cancelled
+     * @throws CancellationException If the work was cancelled
+     */
+    default void checkCancelled() throws CancellationException {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+}
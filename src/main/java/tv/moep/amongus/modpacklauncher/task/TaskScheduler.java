@@ -0,0 +1,258 @@
+package tv.moep.amongus.modpacklauncher.task;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import javax.swing.SwingUtilities;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs named, cancellable tasks in the background. Tasks which work on the same folders are run
+ * one after another in the order they were submitted while unrelated tasks run concurrently.
+ * All callbacks are run on the Swing Event Dispatch Thread.
+ */
+public class TaskScheduler {
+    private final ExecutorService executor;
+    private final Map<Path, CompletableFuture<Void>> folderQueues = new HashMap<>();
+    private final List<Consumer<Task<?>>> submitListeners = new CopyOnWriteArrayList<>();
+
+    public TaskScheduler(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "Task " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submit a new task
+     * @param name The name of the task to display
+     * @param folders The folders the task works on, it waits for earlier tasks on the same folders
+     * @param work The work to run
+     * @param <T> The type of the result
+     * @return The task
+     */
+    public <T> Task<T> submit(String name, Collection<Path> folders, Work<T> work) {
+        Task<T> task = new Task<>(name, work);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<?>[] previous;
+        synchronized (folderQueues) {
+            List<CompletableFuture<Void>> waitFor = new ArrayList<>();
+            for (Path folder : folders) {
+                Path key = folder.toAbsolutePath().normalize();
+                CompletableFuture<Void> tail = folderQueues.put(key, done);
+                if (tail != null) {
+                    waitFor.add(tail);
+                }
+            }
+            previous = waitFor.toArray(new CompletableFuture<?>[0]);
+        }
+        done.whenComplete((r, e) -> {
+            synchronized (folderQueues) {
+                folderQueues.values().removeIf(f -> f == done);
+            }
+        });
+        for (Consumer<Task<?>> listener : submitListeners) {
+            SwingUtilities.invokeLater(() -> listener.accept(task));
+        }
+        CompletableFuture.allOf(previous)
+                .handle((r, e) -> null)
+                .thenRunAsync(task::run, executor)
+                .whenComplete((r, e) -> done.complete(null));
+        return task;
+    }
+
+    /**
+     * Check whether a task that uses a folder is queued or running
+     * @param folder The folder
+     * @return Whether or not the folder is in use
+     */
+    public boolean isBusy(Path folder) {
+        synchronized (folderQueues) {
+            return folderQueues.containsKey(folder.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Wait until no task uses a folder anymore, including tasks that get queued while waiting
+     * @param folder The folder
+     * @return A future that completes once the folder is not in use
+     */
+    public CompletableFuture<Void> whenIdle(Path folder) {
+        CompletableFuture<Void> tail;
+        synchronized (folderQueues) {
+            tail = folderQueues.get(folder.toAbsolutePath().normalize());
+        }
+        // A completed tail is only about to be removed
+        if (tail == null || tail.isDone()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return tail.thenCompose(v -> whenIdle(folder));
+    }
+
+    /**
+     * Add a listener that gets notified on the EDT whenever a task was submitted
+     * @param listener The listener
+     */
+    public void onSubmit(Consumer<Task<?>> listener) {
+        submitListeners.add(listener);
+    }
+
+    public interface Work<T> {
+        T run(TaskContext context) throws Exception;
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    public static class Task<T> implements TaskContext {
+        private final String name;
+        private final Work<T> work;
+        private final List<Consumer<String>> progressListeners = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile State state = State.QUEUED;
+        private volatile String progress = "Queued";
+        private volatile Thread thread = null;
+
+        private Task(String name, Work<T> work) {
+            this.name = name;
+            this.work = work;
+        }
+
+        private void run() {
+            synchronized (this) {
+                if (state == State.CANCELLED) {
+                    return;
+                }
+                state = State.RUNNING;
+                thread = Thread.currentThread();
+            }
+            progress("Running");
+            try {
+                T value = work.run(this);
+                // Work that finished despite a late cancellation has already applied its changes so it is reported as done
+                state = State.DONE;
+                result.complete(value);
+            } catch (CancellationException | InterruptedException e) {
+                state = State.CANCELLED;
+                result.cancel(false);
+            } catch (Throwable e) {
+                if (isCancelled()) {
+                    result.cancel(false);
+                } else {
+                    state = State.FAILED;
+                    result.completeExceptionally(e);
+                }
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    // Clear a possible cancel interrupt before the thread gets reused
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        /**
+         * Cancel this task. Queued tasks will not run, running tasks get interrupted and stop at their next check.
+         */
+        public synchronized void cancel() {
+            if (state == State.QUEUED || state == State.RUNNING) {
+                boolean queued = state == State.QUEUED;
+                state = State.CANCELLED;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                if (queued) {
+                    result.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public void progress(String message) {
+            progress = message;
+            for (Consumer<String> listener : progressListeners) {
+                SwingUtilities.invokeLater(() -> listener.accept(message));
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == State.CANCELLED;
+        }
+
+        /**
+         * Add a listener that gets called on the EDT whenever the progress of this task changes
+         * @param listener The listener
+         * @return This task
+         */
+        public Task<T> onProgress(Consumer<String> listener) {
+            progressListeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Add a callback that gets called on the EDT when this task completed, failed or got cancelled.
+         * On cancellation the error is a {@link CancellationException}.
+         * @param callback The callback with the result or the error
+         * @return This task
+         */
+        public Task<T> onComplete(BiConsumer<T, Throwable> callback) {
+            result.whenComplete((r, e) -> SwingUtilities.invokeLater(() -> {
+                Throwable cause = e;
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                callback.accept(r, cause);
+            }));
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public String getProgress() {
+            return progress;
+        }
+    }
+}
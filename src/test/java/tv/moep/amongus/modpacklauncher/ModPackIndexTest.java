@@ -0,0 +1,77 @@
+package tv.moep.amongus.modpacklauncher;
+
+/*
+ * AmongUs-ModPackLauncher - AmongUs-ModPackLauncher
+ * Copyright (c) 2021 Max Lee (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tv.moep.amongus.modpacklauncher.io.FileCopier;
+import tv.moep.amongus.modpacklauncher.io.Hashes;
+import tv.moep.amongus.modpacklauncher.io.Manifest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ModPackIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void manifestAndScanHaveSameFingerprint() throws IOException {
+        ModPackLauncher launcher = mock(ModPackLauncher.class);
+        when(launcher.getFileCopier()).thenReturn(new FileCopier(2));
+        when(launcher.loadModPackProperties(any(Path.class))).thenReturn(new Properties());
+
+        Path steamFolder = temp.newFolder("steamapps").toPath();
+        Path folder = steamFolder.resolve(ModPackIndex.FOLDER_PREFIX + "Test");
+        Manifest manifest = new Manifest();
+        write(folder, "Among Us.exe", "game", manifest);
+        write(folder, "BepInEx/plugins/Mod.dll", "mod", manifest);
+        manifest.save(folder);
+
+        ModPackIndex index = new ModPackIndex(launcher, temp.getRoot().toPath().resolve("modpacks.properties"));
+        index.load(steamFolder);
+
+        index.update(folder, manifest);
+        ModPackIndex.Entry fromManifest = index.get(folder);
+        index.update(folder);
+        ModPackIndex.Entry fromScan = index.get(folder);
+
+        assertNotNull(fromManifest.getFingerprint());
+        assertEquals(fromManifest.getFingerprint(), fromScan.getFingerprint());
+        assertEquals(fromManifest.getSize(), fromScan.getSize());
+    }
+
+    private static void write(Path folder, String path, String content, Manifest manifest) throws IOException {
+        Path file = folder.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        manifest.put(new Manifest.Entry(path, Files.size(file), Files.getLastModifiedTime(file).toMillis(), Hashes.sha256(file), false));
+    }
+}